@@ -0,0 +1,198 @@
+package iv.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import iv.db.JavaMethodDAO;
+import iv.db.TextCompressor;
+
+/**
+ * 既存のデータベースを複製し，テキストとテストのカラムを圧縮しない場合と圧縮する場合で記録し直して，
+ * カラムごとの大きさ，ファイルの大きさ，全行を読み出して展開する走査のスループットを報告する．
+ * 走査はOSのページキャッシュに載った状態で計るので，I/Oが律速になる場合の差はファイルの大きさの比で見積もる．
+ *
+ * ./gradlew compressionReport -PcompressionDatabase=<database> で実行する．
+ */
+public class CompressionReport {
+
+  private static final String[] METHOD_COLUMNS = {"rtext", "ntext", "Target_ESTest",
+      "Target_ESTest_scaffolding"};
+  private static final String[] BLOB_METHOD_COLUMNS = {"rtext", "ntext"};
+
+  // 記録し直す際に一度に読み出す行の数
+  private static final int BATCH = 1_000;
+
+  // 走査を繰り返す回数．最も速かったものを報告する
+  private static final int SCANS = 3;
+
+  public static void main(final String[] args) throws IOException, SQLException {
+    if (args.length < 1) {
+      System.err.println("a database must be specified.");
+      return;
+    }
+    final Path source = Paths.get(args[0]);
+    if (!Files.isRegularFile(source)) {
+      System.err.println("specified database does not exist: " + source);
+      return;
+    }
+
+    System.out.println(String.format("%-14s %14s %14s %14s %14s %14s %12s %12s", "database",
+        "file", METHOD_COLUMNS[0], METHOD_COLUMNS[1], METHOD_COLUMNS[2], METHOD_COLUMNS[3],
+        "rows/s", "MiB/s"));
+    report(source, false);
+    report(source, true);
+  }
+
+  private static void report(final Path source, final boolean compressed)
+      throws IOException, SQLException {
+
+    final Path database = Files.createTempFile("iv-compression", ".db");
+    try {
+      Files.copy(source, database, StandardCopyOption.REPLACE_EXISTING);
+      final long[] columnBytes = new long[METHOD_COLUMNS.length];
+      try (final Connection connection = DriverManager.getConnection(
+          "jdbc:sqlite:" + database.toAbsolutePath())) {
+        try (final Statement statement = connection.createStatement()) {
+          statement.execute("pragma journal_mode = delete");
+          statement.executeUpdate(
+              "create table if not exists dictionaries (" + JavaMethodDAO.DICTIONARIES_SCHEMA
+                  + ")");
+        }
+        connection.setAutoCommit(false);
+        final TextCompressor compressor = new TextCompressor(compressed);
+        compressor.load(connection);
+        recode(connection, compressor, "methods", METHOD_COLUMNS);
+        recode(connection, compressor, "blobmethods", BLOB_METHOD_COLUMNS);
+        connection.commit();
+        compressor.commit();
+        connection.setAutoCommit(true);
+
+        try (final Statement statement = connection.createStatement()) {
+          statement.execute("vacuum");
+          for (int index = 0; index < METHOD_COLUMNS.length; index++) {
+            try (final ResultSet results = statement.executeQuery(
+                "select coalesce(sum(length(" + METHOD_COLUMNS[index] + ")), 0) from methods")) {
+              columnBytes[index] = results.next() ? results.getLong(1) : 0;
+            }
+          }
+        }
+      }
+
+      final long fileBytes = Files.size(database);
+      double bestRows = 0;
+      double bestBytes = 0;
+      for (int scan = 0; scan < SCANS; scan++) {
+        final double[] throughput = scan(database);
+        bestRows = Math.max(bestRows, throughput[0]);
+        bestBytes = Math.max(bestBytes, throughput[1]);
+      }
+      System.out.println(String.format("%-14s %14d %14d %14d %14d %14d %12.0f %12.1f",
+          compressed ? "compressed" : "uncompressed", fileBytes, columnBytes[0], columnBytes[1],
+          columnBytes[2], columnBytes[3], bestRows, bestBytes / (1024 * 1024)));
+    } finally {
+      Files.deleteIfExists(database);
+    }
+  }
+
+  // 与えられたカラムを展開して，指定された設定で圧縮し直す．辞書がなければ最初の行から作る
+  private static void recode(final Connection connection, final TextCompressor compressor,
+      final String table, final String[] columns) throws SQLException {
+
+    final String selectSQL = "select rowid, " + String.join(", ", columns) + " from " + table
+        + " where rowid > ? order by rowid limit " + BATCH;
+    final StringBuilder updateSQL = new StringBuilder("update " + table + " set ");
+    for (int index = 0; index < columns.length; index++) {
+      updateSQL.append(0 < index ? ", " : "")
+          .append(columns[index])
+          .append(" = ?");
+    }
+    updateSQL.append(" where rowid = ?");
+
+    try (final PreparedStatement select = connection.prepareStatement(selectSQL);
+        final PreparedStatement update = connection.prepareStatement(updateSQL.toString())) {
+      long last = 0;
+      while (true) {
+        final List<Long> rowIDs = new ArrayList<>(BATCH);
+        final List<byte[][]> rows = new ArrayList<>(BATCH);
+        select.setLong(1, last);
+        try (final ResultSet results = select.executeQuery()) {
+          while (results.next()) {
+            rowIDs.add(results.getLong(1));
+            final byte[][] texts = new byte[columns.length][];
+            for (int index = 0; index < columns.length; index++) {
+              texts[index] = compressor.decompress(results.getBytes(index + 2));
+            }
+            rows.add(texts);
+          }
+        }
+        if (rows.isEmpty()) {
+          return;
+        }
+
+        // JavaMethodDAOと同様に，テキストは最初のまとまりから，テストは最初の値から辞書を作る
+        for (int index = 0; index < columns.length; index++) {
+          final List<byte[]> samples = new ArrayList<>();
+          for (final byte[][] texts : rows) {
+            if (null != texts[index]) {
+              samples.add(texts[index]);
+            }
+          }
+          compressor.train(connection, columns[index], columns[index].startsWith("Target_")
+              && !samples.isEmpty() ? Collections.singletonList(samples.get(0)) : samples);
+        }
+
+        // 辞書はコミットされてから圧縮に用いられる
+        connection.commit();
+        compressor.commit();
+
+        for (int row = 0; row < rows.size(); row++) {
+          final byte[][] texts = rows.get(row);
+          for (int index = 0; index < columns.length; index++) {
+            update.setBytes(index + 1, compressor.compress(columns[index], texts[index]));
+          }
+          update.setLong(columns.length + 1, rowIDs.get(row));
+          update.addBatch();
+        }
+        update.executeBatch();
+        last = rowIDs.get(rowIDs.size() - 1);
+      }
+    }
+  }
+
+  // methodsテーブルの全行のテキストとテストを読み出して展開し，行数と展開後のバイト数の秒あたりの値を返す
+  private static double[] scan(final Path database) throws SQLException {
+    try (final Connection connection = DriverManager.getConnection(
+        "jdbc:sqlite:" + database.toAbsolutePath());
+        final Statement statement = connection.createStatement()) {
+      final TextCompressor compressor = new TextCompressor(false);
+      compressor.load(connection);
+
+      final long start = System.nanoTime();
+      long rows = 0;
+      long bytes = 0;
+      try (final ResultSet results = statement.executeQuery(
+          "select " + String.join(", ", METHOD_COLUMNS) + " from methods")) {
+        while (results.next()) {
+          for (int index = 0; index < METHOD_COLUMNS.length; index++) {
+            final byte[] text = compressor.decompress(results.getBytes(index + 1));
+            bytes += null != text ? text.length : 0;
+          }
+          rows++;
+        }
+      }
+      final double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+      return new double[] {rows / seconds, bytes / seconds};
+    }
+  }
+}
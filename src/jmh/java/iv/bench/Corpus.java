@@ -0,0 +1,77 @@
+package iv.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import iv.IVConfig;
+
+/**
+ * ベンチマークに用いる固定のソースコード．結果を比較できるように，コーパスの内容は変更しない．
+ */
+public class Corpus {
+
+  private static final String DIRECTORY = "/corpus/";
+
+  private final List<String> paths;
+  private final List<char[]> texts;
+
+  private Corpus(final List<String> paths, final List<char[]> texts) {
+    this.paths = Collections.unmodifiableList(paths);
+    this.texts = Collections.unmodifiableList(texts);
+  }
+
+  public static Corpus load() {
+    final List<String> paths = new ArrayList<>();
+    final List<char[]> texts = new ArrayList<>();
+    for (final String line : read("index.txt").split("\\R")) {
+      final String trimmedLine = line.trim();
+      if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+        continue;
+      }
+      paths.add(trimmedLine);
+      texts.add(read(trimmedLine).toCharArray());
+    }
+    return new Corpus(paths, texts);
+  }
+
+  /**
+   * ベンチマークで共通に用いる設定を返す．
+   *
+   * @return
+   */
+  public static IVConfig getConfig() {
+    final IVConfig config = new IVConfig();
+    config.setJavaVersion("1.16");
+    return config;
+  }
+
+  public int size() {
+    return paths.size();
+  }
+
+  public String getPath(final int index) {
+    return paths.get(index);
+  }
+
+  public char[] getText(final int index) {
+    return texts.get(index);
+  }
+
+  private static String read(final String name) {
+    try (final InputStream stream = Corpus.class.getResourceAsStream(DIRECTORY + name)) {
+      if (null == stream) {
+        throw new IllegalStateException("corpus file not found: " + name);
+      }
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      stream.transferTo(bytes);
+      return bytes.toString(StandardCharsets.UTF_8);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package iv.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import iv.IVConfig;
+import iv.db.JavaMethodDAO;
+
+/**
+ * 複数のスレッドから exists，isCompilable，setTests を混ぜて呼んだ場合のスループットのベンチマーク．
+ * pooled は JavaMethodDAO（読み出し専用コネクションのプールと書き込みスレッド）を用い，
+ * serialized は以前の JavaMethodDAO と同様に一つのコネクションを一つのロックで共有する．
+ * スレッド数は @GroupThreads の値で，JMHの -tg オプションで変更できる．
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DAOContentionBenchmark {
+
+  private static final int ROWS = 100_000;
+
+  @State(Scope.Benchmark)
+  public static class Database {
+
+    private Path database;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+      database = Files.createTempFile("iv-bench", ".db");
+      try (final Connection connection = DriverManager.getConnection(
+          "jdbc:sqlite:" + database.toAbsolutePath());
+          final Statement statement = connection.createStatement()) {
+        statement.executeUpdate("create table methods (" + JavaMethodDAO.METHODS_SCHEMA + ")");
+        statement.executeUpdate("insert into methods(signature, name, path, start, end, repo, "
+            + "revision, compilable, tests, groupID) "
+            + "with recursive n(i) as (select 1 union all select i + 1 from n where i < " + ROWS
+            + ") select 'int(int)', 'm' || i, 'p' || i, 1, 2, 'repository', 'revision', i % 2, "
+            + "i % 5, -1 from n");
+      }
+
+      final IVConfig config = Corpus.getConfig();
+      config.setDesPath(database.toString());
+      JavaMethodDAO.SINGLETON.initialize(config);
+
+      connection = DriverManager.getConnection("jdbc:sqlite:" + database.toAbsolutePath());
+      connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+      connection.close();
+      JavaMethodDAO.SINGLETON.close();
+      Files.deleteIfExists(database);
+      Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-wal"));
+      Files.deleteIfExists(database.resolveSibling(database.getFileName() + "-shm"));
+    }
+
+    synchronized boolean exists(final int id) throws SQLException {
+      try (final PreparedStatement statement = connection.prepareStatement(
+          "select * from methods where id = ?")) {
+        statement.setInt(1, id);
+        try (final ResultSet results = statement.executeQuery()) {
+          return results.next();
+        }
+      }
+    }
+
+    synchronized boolean isCompilable(final int id) throws SQLException {
+      try (final PreparedStatement statement = connection.prepareStatement(
+          "select compilable from methods where id = ?")) {
+        statement.setInt(1, id);
+        try (final ResultSet results = statement.executeQuery()) {
+          return results.next() && 1 == results.getInt(1);
+        }
+      }
+    }
+
+    synchronized void setTests(final int id, final int tests) throws SQLException {
+      try (final PreparedStatement statement = connection.prepareStatement(
+          "update methods set tests = ?, Target_ESTest = ?, Target_ESTest_scaffolding = ? where id = ?")) {
+        statement.setInt(1, tests);
+        statement.setBytes(2, new byte[0]);
+        statement.setBytes(3, new byte[0]);
+        statement.setInt(4, id);
+        statement.executeUpdate();
+        connection.commit();
+      }
+    }
+  }
+
+  private static int nextID() {
+    return ThreadLocalRandom.current()
+        .nextInt(1, ROWS + 1);
+  }
+
+  @Benchmark
+  @Group("pooled")
+  @GroupThreads(3)
+  public boolean pooledExists(final Database database) {
+    return JavaMethodDAO.SINGLETON.exists(nextID());
+  }
+
+  @Benchmark
+  @Group("pooled")
+  @GroupThreads(3)
+  public boolean pooledIsCompilable(final Database database) {
+    return JavaMethodDAO.SINGLETON.isCompilable(nextID());
+  }
+
+  @Benchmark
+  @Group("pooled")
+  @GroupThreads(1)
+  public void pooledSetTests(final Database database) {
+    JavaMethodDAO.SINGLETON.setTests(nextID(), 1, "", "");
+  }
+
+  @Benchmark
+  @Group("serialized")
+  @GroupThreads(3)
+  public boolean serializedExists(final Database database) throws SQLException {
+    return database.exists(nextID());
+  }
+
+  @Benchmark
+  @Group("serialized")
+  @GroupThreads(3)
+  public boolean serializedIsCompilable(final Database database) throws SQLException {
+    return database.isCompilable(nextID());
+  }
+
+  @Benchmark
+  @Group("serialized")
+  @GroupThreads(1)
+  public void serializedSetTests(final Database database) throws SQLException {
+    database.setTests(nextID(), 1);
+  }
+}
@@ -0,0 +1,114 @@
+package iv.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import iv.IVConfig;
+import iv.ast.JavaFileVisitor;
+import iv.ast.JavaMethodExtractor;
+import iv.ast.ParserContext;
+import iv.data.JavaMethod;
+
+/**
+ * メソッド抽出の各段階のベンチマーク．いずれもコーパス全体を1回の操作として計測する．
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractionBenchmark {
+
+  private IVConfig config;
+  private Corpus corpus;
+  private JavaMethodExtractor extractor;
+  private List<JavaMethod> methods;
+
+  @Setup
+  public void setup() {
+    config = Corpus.getConfig();
+    corpus = Corpus.load();
+    extractor = new JavaMethodExtractor(config, null, null);
+    methods = new ArrayList<>();
+    for (int index = 0; index < corpus.size(); index++) {
+      methods.addAll(extractor.getJavaMethods(corpus.getPath(index), corpus.getText(index)));
+    }
+  }
+
+  @Benchmark
+  public void parse(final Blackhole blackhole) {
+    for (int index = 0; index < corpus.size(); index++) {
+      blackhole.consume(parse(corpus.getText(index)));
+    }
+  }
+
+  @Benchmark
+  public void parseAndVisit(final Blackhole blackhole) {
+    for (int index = 0; index < corpus.size(); index++) {
+      blackhole.consume(extractor.getJavaMethods(corpus.getPath(index), corpus.getText(index)));
+    }
+  }
+
+  @Benchmark
+  public void normalizeAndHash(final ParsedAsts parsed, final Blackhole blackhole) {
+    final List<CompilationUnit> asts = parsed.asts;
+    for (int index = 0; index < asts.size(); index++) {
+      final JavaFileVisitor visitor = new JavaFileVisitor(config, null, null,
+          corpus.getPath(index));
+      asts.get(index)
+          .accept(visitor);
+      for (final JavaMethod method : visitor.getJavaMethods()) {
+        blackhole.consume(method.getMD5());
+      }
+    }
+  }
+
+  @Benchmark
+  public void getClassText(final Blackhole blackhole) {
+    for (final JavaMethod method : methods) {
+      blackhole.consume(method.getClassText("Target"));
+    }
+  }
+
+  private static CompilationUnit parse(final char[] text) {
+    final ASTParser parser = ParserContext.get(Corpus.getConfig()
+        .getJavaVersion())
+        .getParser();
+    parser.setSource(text);
+    return (CompilationUnit) parser.createAST(null);
+  }
+
+  /**
+   * 訪問してもASTは書き換えられないので，構文解析したASTを試行の間使い回す．
+   * 他のベンチマークに構文解析の時間とメモリを含めないように，別の状態として分けている．
+   */
+  @State(Scope.Thread)
+  public static class ParsedAsts {
+
+    List<CompilationUnit> asts;
+
+    @Setup(Level.Trial)
+    public void parseCorpus() {
+      final Corpus corpus = Corpus.load();
+      asts = new ArrayList<>();
+      for (int index = 0; index < corpus.size(); index++) {
+        asts.add(parse(corpus.getText(index)));
+      }
+    }
+  }
+}
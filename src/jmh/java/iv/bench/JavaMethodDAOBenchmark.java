@@ -0,0 +1,109 @@
+package iv.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import iv.IVConfig;
+import iv.ast.JavaMethodExtractor;
+import iv.data.JavaMethod;
+import iv.db.JavaMethodDAO;
+
+/**
+ * 一時的なSQLiteファイルに対する JavaMethodDAO.addMethods のベンチマーク．
+ * 1回の操作で，コーパスから抽出したメソッドを batchSize 個書き込む．bulkLoad では一括登録向けの設定を用いる．
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JavaMethodDAOBenchmark {
+
+  @Param({"100", "1000"})
+  public int batchSize;
+
+  @Param({"false", "true"})
+  public boolean bulkLoad;
+
+  private Path directory;
+  private List<JavaMethod> methods;
+  private List<JavaMethod> batch;
+  private int revision;
+
+  @Setup(Level.Trial)
+  public void setupTrial() throws IOException {
+    final IVConfig config = Corpus.getConfig();
+    final Corpus corpus = Corpus.load();
+    final JavaMethodExtractor extractor = new JavaMethodExtractor(config, null, null);
+    methods = new ArrayList<>();
+    for (int index = 0; index < corpus.size(); index++) {
+      methods.addAll(extractor.getJavaMethods(corpus.getPath(index), corpus.getText(index)));
+    }
+    directory = Files.createTempDirectory("iv-bench");
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() throws IOException {
+    final Path database = Files.createTempFile(directory, "methods", ".db");
+    final IVConfig config = Corpus.getConfig();
+    config.setDesPath(database.toString());
+    config.setBulkLoad(bulkLoad);
+    JavaMethodDAO.SINGLETON.initialize(config);
+  }
+
+  /**
+   * 同じメソッドは一意制約に反するので，操作ごとに異なるリビジョンのメソッドとして書き込む．
+   */
+  @Setup(Level.Invocation)
+  public void setupInvocation() {
+    batch = new ArrayList<>(batchSize);
+    final String commit = Integer.toString(revision++);
+    for (int index = 0; index < batchSize; index++) {
+      final JavaMethod method = methods.get(index % methods.size());
+      batch.add(method.relocate(method.path, "repository" + index / methods.size(), commit));
+    }
+  }
+
+  @Benchmark
+  public void addMethods() {
+    JavaMethodDAO.SINGLETON.addMethods(batch);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() {
+    JavaMethodDAO.SINGLETON.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    try (final Stream<Path> files = Files.walk(directory)) {
+      files.sorted((a, b) -> b.compareTo(a))
+          .forEach(f -> {
+            try {
+              Files.delete(f);
+            } catch (final IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
+  }
+}
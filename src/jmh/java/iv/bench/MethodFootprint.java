@@ -0,0 +1,169 @@
+package iv.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import iv.IVConfig;
+import iv.data.JavaMethod;
+import iv.fs.SourceDirectory;
+
+/**
+ * 実際のリポジトリから抽出したメソッドを全てメモリ上に保持し，メソッドあたりのヒープ使用量を報告する．
+ * 比較のために，以前の表現（文字列をStringで持ち，引数をArrayListで持ち，文字列を共有しない）で
+ * 同じメソッドを保持した場合の使用量も報告する．
+ *
+ * ./gradlew footprint -PfootprintPath=<directory> で実行する．
+ */
+public class MethodFootprint {
+
+  public static void main(final String[] args) {
+    final Path root = Paths.get(0 < args.length ? args[0] : ".");
+    final IVConfig config = Corpus.getConfig();
+    config.setThreads(Runtime.getRuntime()
+        .availableProcessors());
+
+    final List<JavaMethod> methods = Collections.synchronizedList(new ArrayList<>());
+    new SourceDirectory(config, root).extractJavaMethods(methods::add);
+
+    // ソースコードの一部分として保持している生文字列をバイト列にして，ファイルの内容を解放する
+    for (final JavaMethod method : methods) {
+      method.getRawTextBytes();
+    }
+    if (methods.isEmpty()) {
+      System.out.println("no methods found in " + root);
+      return;
+    }
+
+    // 抽出の際の構文解析器やスレッドが確保したメモリを含めないように，抽出が終わった後に
+    // 両方の表現の複製を作り，その増分を計測する
+    final long baseline = getUsedHeap();
+    final List<JavaMethod> compactMethods = copy(methods);
+    final long compactHeap = getUsedHeap();
+    final List<LegacyMethod> legacyMethods = LegacyMethod.copy(methods);
+    final long legacyHeap = getUsedHeap();
+
+    final int count = methods.size();
+    System.out.println("methods: " + count);
+    System.out.println(String.format("before (legacy layout): %.1f bytes/method",
+        (legacyHeap - compactHeap) / (double) count));
+    System.out.println(String.format("after (compact layout): %.1f bytes/method",
+        (compactHeap - baseline) / (double) count));
+
+    // 計測が終わるまで全ての表現を到達可能にしておく
+    System.out.println("retained: " + methods.size() + ", " + compactMethods.size() + ", "
+        + legacyMethods.size());
+  }
+
+  /**
+   * 文字列のバイト列を複製して，現在の表現のメソッドを作り直す．名前などの文字列は抽出時と同じく共有される．
+   */
+  private static List<JavaMethod> copy(final List<JavaMethod> methods) {
+    final List<JavaMethod> copiedMethods = new ArrayList<>(methods.size());
+    for (final JavaMethod method : methods) {
+      final byte[] rawText = method.getRawTextBytes();
+      final byte[] normalizedText = method.getNormalizedTextBytes();
+      final JavaMethod copiedMethod = new JavaMethod(method.returnType, method.name,
+          null != rawText ? rawText.clone() : null,
+          null != normalizedText ? normalizedText.clone() : null, method.size, method.branches,
+          method.path, method.startLine, method.endLine, method.repository, method.commit,
+          method.id);
+      for (final String parameter : method.getParameters()) {
+        copiedMethod.addParameter(parameter);
+      }
+      copiedMethods.add(copiedMethod);
+    }
+    return copiedMethods;
+  }
+
+  // 抽出の直後は，一度のGCでは解放されないオブジェクトが残るので，使用量が減らなくなるまでGCを繰り返す
+  private static long getUsedHeap() {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long used = Long.MAX_VALUE;
+    for (int count = 0; count < 20; count++) {
+      for (int gc = 0; gc < 5; gc++) {
+        System.gc();
+      }
+      final long current = memory.getHeapMemoryUsage()
+          .getUsed();
+      if (used <= current) {
+        return current;
+      }
+      used = current;
+      try {
+        Thread.sleep(100);
+      } catch (final InterruptedException e) {
+        Thread.currentThread()
+            .interrupt();
+        return used;
+      }
+    }
+    return used;
+  }
+
+  /**
+   * 以前のJavaMethodと同じ配置のクラス．文字列は全て複製して持つ．
+   */
+  private static class LegacyMethod {
+
+    final String returnType;
+    final List<String> parameters;
+    final String name;
+    final String rawText;
+    final String normalizedText;
+    final int size;
+    final int branches;
+    final String path;
+    final int startLine;
+    final int endLine;
+    final String repository;
+    final String commit;
+    final int id;
+    byte[] md5;
+
+    LegacyMethod(final JavaMethod method, final String path, final String repository) {
+      this.returnType = copy(method.returnType);
+      this.parameters = new ArrayList<>();
+      for (final String parameter : method.getParameters()) {
+        this.parameters.add(copy(parameter));
+      }
+      this.name = copy(method.name);
+      this.rawText = method.getRawText();
+      this.normalizedText = method.getNormalizedText();
+      this.size = method.size;
+      this.branches = method.branches;
+      this.path = path;
+      this.startLine = method.startLine;
+      this.endLine = method.endLine;
+      this.repository = repository;
+      this.commit = copy(method.commit);
+      this.id = method.id;
+    }
+
+    /**
+     * 以前の抽出と同様に，パスはファイルごとに，リポジトリは全体で一つの文字列を共有する．
+     */
+    static List<LegacyMethod> copy(final List<JavaMethod> methods) {
+      final Map<String, String> paths = new HashMap<>();
+      final Map<String, String> repositories = new HashMap<>();
+      final List<LegacyMethod> legacyMethods = new ArrayList<>(methods.size());
+      for (final JavaMethod method : methods) {
+        final String path = paths.computeIfAbsent(method.path, LegacyMethod::copy);
+        final String repository = null != method.repository ? repositories.computeIfAbsent(
+            method.repository, LegacyMethod::copy) : null;
+        legacyMethods.add(new LegacyMethod(method, path, repository));
+      }
+      return legacyMethods;
+    }
+
+    // new String(String)は元の文字列と配列を共有するので，配列ごと複製する
+    private static String copy(final String text) {
+      return null != text ? new String(text.toCharArray()) : null;
+    }
+  }
+}
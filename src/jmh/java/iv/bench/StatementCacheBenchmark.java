@@ -0,0 +1,99 @@
+package iv.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import iv.IVConfig;
+import iv.db.JavaMethodDAO;
+
+/**
+ * 100万行のmethodsテーブルに対する，IDを指定した1件の問い合わせの遅延のベンチマーク．
+ * uncached は以前の JavaMethodDAO と同様に呼び出しごとにPreparedStatementを作り，
+ * cached は JavaMethodDAO の isCompilable と getNumberOfTests を呼ぶ．
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StatementCacheBenchmark {
+
+  private static final int ROWS = 1_000_000;
+
+  private Path database;
+  private Connection connection;
+
+  @Setup(Level.Trial)
+  public void setupTrial() throws IOException, SQLException {
+    database = Files.createTempFile("iv-bench", ".db");
+    try (final Connection connection = DriverManager.getConnection(
+        "jdbc:sqlite:" + database.toAbsolutePath());
+        final Statement statement = connection.createStatement()) {
+      statement.executeUpdate(
+          "create table methods (" + JavaMethodDAO.METHODS_SCHEMA + ")");
+      statement.executeUpdate("insert into methods(signature, name, path, start, end, repo, "
+          + "revision, compilable, tests, groupID) "
+          + "with recursive n(i) as (select 1 union all select i + 1 from n where i < " + ROWS
+          + ") select 'int(int)', 'm' || i, 'p' || i, 1, 2, 'repository', 'revision', i % 2, "
+          + "i % 5, -1 from n");
+    }
+
+    final IVConfig config = Corpus.getConfig();
+    config.setDesPath(database.toString());
+    JavaMethodDAO.SINGLETON.initialize(config);
+    connection = DriverManager.getConnection("jdbc:sqlite:" + database.toAbsolutePath());
+  }
+
+  @Benchmark
+  public int cached() {
+    final int id = ThreadLocalRandom.current()
+        .nextInt(1, ROWS + 1);
+    return (JavaMethodDAO.SINGLETON.isCompilable(id) ? 1 : 0)
+        + JavaMethodDAO.SINGLETON.getNumberOfTests(id);
+  }
+
+  @Benchmark
+  public int uncached() throws SQLException {
+    final int id = ThreadLocalRandom.current()
+        .nextInt(1, ROWS + 1);
+    return query("select compilable from methods where id = ?", id)
+        + query("select tests from methods where id = ?", id);
+  }
+
+  private int query(final String sql, final int id) throws SQLException {
+    try (final PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setInt(1, id);
+      try (final ResultSet results = statement.executeQuery()) {
+        return results.next() ? results.getInt(1) : 0;
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException, SQLException {
+    connection.close();
+    JavaMethodDAO.SINGLETON.close();
+    Files.delete(database);
+  }
+}
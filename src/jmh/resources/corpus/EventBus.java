@@ -0,0 +1,141 @@
+package corpus.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class with annotations, Javadoc, inner, anonymous and local classes, and lambdas.
+ */
+public class EventBus {
+
+  private final Map<String, List<Listener>> listeners = new HashMap<>();
+
+  private final Comparator<String> order = new Comparator<String>() {
+
+    @Override
+    public int compare(final String left, final String right) {
+      final int byLength = Integer.compare(left.length(), right.length());
+      if (byLength != 0) {
+        return byLength;
+      }
+      return left.compareTo(right);
+    }
+  };
+
+  static {
+    System.setProperty("corpus.event", "loaded");
+  }
+
+  /**
+   * Registers a listener.
+   *
+   * @param topic topic name
+   * @param listener listener
+   */
+  public synchronized void subscribe(final String topic, final Listener listener) {
+    listeners.computeIfAbsent(topic, k -> new ArrayList<>())
+        .add(listener);
+  }
+
+  /**
+   * Returns the number of listeners of a topic.
+   */
+  @Deprecated
+  public synchronized int count(final String topic) {
+    final List<Listener> registered = listeners.get(topic);
+    if (registered == null) {
+      return 0;
+    }
+    return registered.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<String> topics() {
+    final List<String> names = new ArrayList<>(listeners.keySet());
+    Collections.sort(names, order);
+    return names;
+  }
+
+  public int deliver(final String topic, final String payload) {
+    int delivered = 0;
+    for (final Listener listener : listeners.getOrDefault(topic, Collections.emptyList())) {
+      if (listener.accept(payload)) {
+        delivered++;
+      }
+    }
+    return delivered;
+  }
+
+  public String describe(final String topic, final int limit) {
+    class Line {
+
+      private final StringBuilder builder = new StringBuilder();
+
+      String add(final String text, final int max) {
+        if (builder.length() + text.length() > max) {
+          return builder.toString();
+        }
+        builder.append(text);
+        return builder.toString();
+      }
+    }
+    final Line line = new Line();
+    String result = "";
+    for (final String name : topics()) {
+      if (name.startsWith(topic)) {
+        result = line.add(name + ";", limit);
+      }
+    }
+    return result;
+  }
+
+  public Map<String, Integer> histogram(final List<String> events) {
+    final Map<String, Integer> counts = new HashMap<>();
+    events.forEach(e -> counts.merge(e, 1, (a, b) -> a + b));
+    for (final String topic : listeners.keySet()) {
+      counts.putIfAbsent(topic, 0);
+    }
+    return counts;
+  }
+
+  public char severity(final int level) {
+    switch (level) {
+      case 0:
+        return 'D';
+      case 1:
+        return 'I';
+      case 2:
+        return 'W';
+      default:
+        return 'E';
+    }
+  }
+
+  public interface Listener {
+
+    boolean accept(String payload);
+  }
+
+  public static class Counter implements Listener {
+
+    private int count;
+
+    @Override
+    public boolean accept(final String payload) {
+      if (payload.isEmpty()) {
+        return false;
+      }
+      count++;
+      return true;
+    }
+
+    public int getCount(final int offset) {
+      final int value = count + offset;
+      return value < 0 ? 0 : value;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package corpus.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Numbers {
+
+  public static long factorial(final int n) {
+    long result = 1;
+    for (int i = 2; i <= n; i++) {
+      result *= i;
+    }
+    return result;
+  }
+
+  public static int gcd(int a, int b) {
+    while (b != 0) {
+      final int t = a % b;
+      a = b;
+      b = t;
+    }
+    return Math.abs(a);
+  }
+
+  public static boolean isPrime(final long n) {
+    if (n < 2) {
+      return false;
+    }
+    for (long i = 2; i * i <= n; i++) {
+      if (n % i == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static List<Integer> primesBelow(final int limit) {
+    final boolean[] composite = new boolean[Math.max(limit, 2)];
+    final List<Integer> primes = new ArrayList<>();
+    for (int i = 2; i < limit; i++) {
+      if (!composite[i]) {
+        primes.add(i);
+        for (long j = (long) i * i; j < limit; j += i) {
+          composite[(int) j] = true;
+        }
+      }
+    }
+    return primes;
+  }
+
+  public static double mean(final int[] values) {
+    if (values.length == 0) {
+      return 0.0;
+    }
+    long sum = 0;
+    for (final int value : values) {
+      sum += value;
+    }
+    return (double) sum / values.length;
+  }
+
+  public static double median(final int[] values) {
+    final int[] sorted = Arrays.copyOf(values, values.length);
+    Arrays.sort(sorted);
+    if (sorted.length % 2 == 1) {
+      return sorted[sorted.length / 2];
+    }
+    return (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2.0;
+  }
+
+  public static int fibonacci(final int n) {
+    int previous = 0;
+    int current = 1;
+    for (int i = 0; i < n; i++) {
+      final int next = previous + current;
+      previous = current;
+      current = next;
+    }
+    return previous;
+  }
+
+  public static int[] cumulative(final int[] values) {
+    final int[] sums = new int[values.length];
+    int total = 0;
+    for (int i = 0; i < values.length; i++) {
+      total += values[i];
+      sums[i] = total;
+    }
+    return sums;
+  }
+
+  public static String toBinary(int value) {
+    if (value == 0) {
+      return "0";
+    }
+    final StringBuilder builder = new StringBuilder();
+    while (value > 0) {
+      builder.insert(0, value % 2);
+      value /= 2;
+    }
+    return builder.toString();
+  }
+
+  public static int clamp(final int value, final int min, final int max) {
+    if (value < min) {
+      return min;
+    } else if (max < value) {
+      return max;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,107 @@
+package corpus.shop;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Typical business code: almost every method takes or returns project-specific types.
+ */
+public class OrderService {
+
+  private final OrderRepository repository;
+  private final PriceCalculator calculator;
+  private final EventPublisher publisher;
+
+  public OrderService(final OrderRepository repository, final PriceCalculator calculator,
+      final EventPublisher publisher) {
+    this.repository = repository;
+    this.calculator = calculator;
+    this.publisher = publisher;
+  }
+
+  public Order placeOrder(final Customer customer, final List<LineItem> items) {
+    final Order order = new Order(customer);
+    for (final LineItem item : items) {
+      order.addItem(item);
+    }
+    order.setTotal(calculator.total(order));
+    repository.save(order);
+    publisher.publish(new OrderPlaced(order.getId()));
+    return order;
+  }
+
+  public Optional<Order> findOrder(final OrderId id) {
+    return repository.findById(id);
+  }
+
+  public List<Order> findOpenOrders(final Customer customer) {
+    return repository.findByCustomer(customer)
+        .stream()
+        .filter(o -> !o.isClosed())
+        .collect(Collectors.toList());
+  }
+
+  public BigDecimal outstandingBalance(final Customer customer) {
+    BigDecimal balance = BigDecimal.ZERO;
+    for (final Order order : findOpenOrders(customer)) {
+      balance = balance.add(order.getTotal());
+    }
+    return balance;
+  }
+
+  public void cancel(final OrderId id, final Reason reason) throws OrderNotFoundException {
+    final Order order = repository.findById(id)
+        .orElseThrow(() -> new OrderNotFoundException(id));
+    if (order.isShipped()) {
+      throw new IllegalStateException("already shipped: " + id);
+    }
+    order.cancel(reason);
+    repository.save(order);
+    publisher.publish(new OrderCancelled(id, reason));
+  }
+
+  public Invoice createInvoice(final Order order, final TaxPolicy policy) {
+    final Invoice invoice = new Invoice(order.getId());
+    for (final LineItem item : order.getItems()) {
+      invoice.addLine(item.getSku(), item.getQuantity(), calculator.price(item, policy));
+    }
+    invoice.setTax(policy.taxFor(invoice.getSubtotal()));
+    return invoice;
+  }
+
+  public List<Shipment> split(final Order order, final Warehouse primary,
+      final Warehouse secondary) {
+    final List<Shipment> shipments = new ArrayList<>();
+    final Shipment first = new Shipment(primary);
+    final Shipment second = new Shipment(secondary);
+    for (final LineItem item : order.getItems()) {
+      if (primary.hasStock(item.getSku(), item.getQuantity())) {
+        first.add(item);
+      } else {
+        second.add(item);
+      }
+    }
+    shipments.add(first);
+    if (!second.isEmpty()) {
+      shipments.add(second);
+    }
+    return shipments;
+  }
+
+  public Discount bestDiscount(final Customer customer, final List<Discount> discounts) {
+    Discount best = Discount.NONE;
+    for (final Discount discount : discounts) {
+      if (discount.appliesTo(customer) && best.compareTo(discount) < 0) {
+        best = discount;
+      }
+    }
+    return best;
+  }
+
+  protected Audit audit(final Order order, final User user) {
+    return new Audit(order.getId(), user.getName(), System.currentTimeMillis());
+  }
+}
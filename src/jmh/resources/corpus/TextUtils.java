@@ -0,0 +1,130 @@
+package corpus.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small string helpers. Most methods only use java.lang and java.util types.
+ */
+public final class TextUtils {
+
+  private TextUtils() {}
+
+  public static String capitalize(final String text) {
+    if (text.isEmpty()) {
+      return text;
+    }
+    return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+  }
+
+  public static int countWords(final String text) {
+    int count = 0;
+    boolean inWord = false;
+    for (int i = 0; i < text.length(); i++) {
+      if (Character.isWhitespace(text.charAt(i))) {
+        inWord = false;
+      } else if (!inWord) {
+        inWord = true;
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public static String reverse(final String text) {
+    final StringBuilder builder = new StringBuilder(text.length());
+    for (int i = text.length() - 1; 0 <= i; i--) {
+      builder.append(text.charAt(i));
+    }
+    return builder.toString();
+  }
+
+  public static boolean isPalindrome(final String text) {
+    int left = 0;
+    int right = text.length() - 1;
+    while (left < right) {
+      if (text.charAt(left) != text.charAt(right)) {
+        return false;
+      }
+      left++;
+      right--;
+    }
+    return true;
+  }
+
+  public static List<String> split(final String text, final char separator) {
+    final List<String> tokens = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (separator == text.charAt(i)) {
+        tokens.add(text.substring(start, i));
+        start = i + 1;
+      }
+    }
+    tokens.add(text.substring(start));
+    return tokens;
+  }
+
+  public static String join(final List<String> tokens, final String separator) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < tokens.size(); i++) {
+      if (0 < i) {
+        builder.append(separator);
+      }
+      builder.append(tokens.get(i));
+    }
+    return builder.toString();
+  }
+
+  public static Map<Character, Integer> frequencies(final String text) {
+    final Map<Character, Integer> counts = new HashMap<>();
+    for (final char c : text.toCharArray()) {
+      counts.merge(c, 1, Integer::sum);
+    }
+    return counts;
+  }
+
+  public static String repeat(final String text, final int times) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      builder.append(text);
+    }
+    return builder.toString();
+  }
+
+  public static int indexOfIgnoreCase(final String text, final String pattern) {
+    final String lowerText = text.toLowerCase();
+    final String lowerPattern = pattern.toLowerCase();
+    for (int i = 0; i + lowerPattern.length() <= lowerText.length(); i++) {
+      if (lowerText.startsWith(lowerPattern, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public static String abbreviate(final String text, final int width) {
+    if (text.length() <= width) {
+      return text;
+    }
+    if (width < 4) {
+      return text.substring(0, width);
+    }
+    return text.substring(0, width - 3) + "...";
+  }
+
+  public static char mostFrequent(final String text) {
+    final int[] counts = new int[Character.MAX_VALUE + 1];
+    char best = '\0';
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      counts[c]++;
+      if (counts[best] < counts[c]) {
+        best = c;
+      }
+    }
+    return best;
+  }
+}
@@ -4,14 +4,18 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.io.FileUtils;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import iv.ast.TargetTypes;
 import iv.data.JavaMethod;
 import iv.db.JavaMethodDAO;
 import iv.util.Timer;
@@ -73,53 +77,113 @@ public class Classifier {
     }
 
     JavaMethodDAO.SINGLETON.initialize(config);
-    final List<String> signatures = JavaMethodDAO.SINGLETON.getSignatures();
 
-    final AtomicInteger dirIndex = new AtomicInteger(0);
-    for (final String signature : signatures) {
+    // 新しく分類の対象となったシグネチャにグループIDを割り当てる
+    // 割り当て済みのグループIDは変わらないので，ディレクトリの番号は登録の順序や走査の順序に依らない
+    final int newGroups = JavaMethodDAO.SINGLETON.assignGroupIDs();
+    System.out.println(newGroups + " new method groups have been found.");
+
+    // 分類の対象となるメソッドをグループIDの順に一度だけ走査し，グループごとに順に分類する
+    // 返値がないメソッド，引数がないメソッド，文の数が2未満のメソッド，分岐がないメソッドは
+    // データベースで除外し，構文的に同じメソッドは一つにまとめる
+    final List<String> packages = TargetTypes.get(config)
+        .getPackages();
+    final AtomicInteger groups = new AtomicInteger(0);
+    JavaMethodDAO.SINGLETON.forEachClassificationGroup((groupID, signature, methods) -> {
+      classify(groupID, signature, methods, outputPath, packages);
+      groups.incrementAndGet();
+    });
+    JavaMethodDAO.SINGLETON.close();
+
+    System.out.println("target methods have been classified into " + groups.get() + " groups.");
+  }
 
-      // 返値がないメソッド，引数がないメソッドは除外
-      if (signature.startsWith("void(") || signature.endsWith("()")) {
-        continue;
-      }
+  private void classify(final int groupID, final String signature, final List<JavaMethod> methods,
+      final Path outputPath, final List<String> packages) {
+
+    final Path dir = outputPath.resolve(getGroupDirName(groupID, signature));
+    try {
+
+      // シグネチャを名前としてもつディレクトリを作成する
+      FileUtils.deleteDirectory(dir.toFile());
+      Files.createDirectory(dir);
 
-      // 指定されたシグネチャを持つメソッドの数が2つ未満の場合は何もしない
-      final List<JavaMethod> methods = JavaMethodDAO.SINGLETON.getMethods(signature)
-          .stream()
-          .filter(m -> 1 < m.size) // 文の数が2以上
-          .filter(m -> 0 < m.branches) // 分岐の数が1以上
-          .collect(
-              Collectors.toList());
-      if (methods.size() < 2) {
-        continue;
+      for (final JavaMethod method : methods) {
+        final Path subDir = dir.resolve(Integer.toString(method.id));
+        Files.createDirectory(subDir);
+        final String fileName = "Target";
+        final Path file = subDir.resolve(fileName + ".java");
+        Files.writeString(file, method.getClassText(fileName, packages), StandardCharsets.UTF_8);
       }
 
-      final String dirName = dirIndex.incrementAndGet() + "." + signature.replace(" ", "")
-          .replace("\t", "")
-          .replace(System.lineSeparator(), "");
-      final String shortenDirName = 255 < dirName.length() ? dirName.substring(0, 255) : dirName;
-      final Path dir = outputPath.resolve(shortenDirName);
-      try {
+      JavaMethodDAO.SINGLETON.setGroup(methods.stream()
+          .map(m -> m.id)
+          .collect(Collectors.toSet()), groupID);
 
-        // シグネチャを名前としてもつディレクトリを作成する
-        FileUtils.deleteDirectory(dir.toFile());
-        Files.createDirectory(dir);
+    } catch (final IOException e) {
+      e.printStackTrace();
+    }
+  }
 
-        for (final JavaMethod method : methods) {
-          final Path subDir = dir.resolve(Integer.toString(method.id));
-          Files.createDirectory(subDir);
-          final String fileName = "Target";
-          final Path file = subDir.resolve(fileName + ".java");
-          Files.writeString(file, method.getClassText(fileName), StandardCharsets.UTF_8);
-        }
+  /**
+   * グループのディレクトリ名（グループID.シグネチャ）を返す．シグネチャの空白は除き，全体を255文字までに切り詰める．
+   *
+   * @param groupID
+   * @param signature
+   * @return
+   */
+  static String getGroupDirName(final int groupID, final String signature) {
+    final String dirName = groupID + "." + signature.replace(" ", "")
+        .replace("\t", "")
+        .replace(System.lineSeparator(), "");
+    return 255 < dirName.length() ? dirName.substring(0, 255) : dirName;
+  }
 
-      } catch (final IOException e) {
-        e.printStackTrace();
+  /**
+   * 引数で与えられたディレクトリ直下のグループのディレクトリを，グループIDで引けるようにして返す．
+   * 名前がグループID.シグネチャの形でないディレクトリは，その旨を出力して無視する．
+   *
+   * @param outputPath
+   * @return
+   * @throws IOException
+   */
+  public static Map<Integer, Path> getGroupDirs(final Path outputPath) throws IOException {
+    final Map<Integer, Path> groupDirs = new HashMap<>();
+    try (final Stream<Path> paths = Files.list(outputPath)) {
+      for (final Path groupDir : paths.filter(Files::isDirectory)
+          .collect(Collectors.toList())) {
+        final String groupDirName = groupDir.getFileName()
+            .toString();
+        final int groupID = getGroupID(groupDirName);
+        if (groupID < 0) {
+          System.out.println(groupDirName + " is not a directory for method group");
+          continue;
+        }
+        groupDirs.put(groupID, groupDir);
       }
     }
+    return groupDirs;
+  }
 
-    System.out.println("target methods have been classified into " + dirIndex.get() + " groups.");
+  /**
+   * getGroupDirNameで作ったディレクトリ名からグループIDを返す．そのような名前でない場合は-1を返す．
+   *
+   * @param groupDirName
+   * @return
+   */
+  static int getGroupID(final String groupDirName) {
+    final int dot = groupDirName.indexOf('.');
+    if (dot <= 0 || 10 < dot) {
+      return -1;
+    }
+    long groupID = 0;
+    for (int index = 0; index < dot; index++) {
+      final char c = groupDirName.charAt(index);
+      if (c < '0' || '9' < c) {
+        return -1;
+      }
+      groupID = groupID * 10 + (c - '0');
+    }
+    return Integer.MAX_VALUE < groupID ? -1 : (int) groupID;
   }
 }
-
-
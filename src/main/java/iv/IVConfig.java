@@ -2,7 +2,12 @@ package iv;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.kohsuke.args4j.Option;
+import iv.data.Fingerprint;
 
 public class IVConfig {
 
@@ -10,11 +15,31 @@ public class IVConfig {
   private Path outputPath = null;
   private Path repoPath = null;
   private Path filePath = null;
+  private Path manifestPath = null;
   private JavaVersion javaVersion = JavaVersion.V1_8;
   private int lowerBound = 0;
   private int upperBound = Integer.MAX_VALUE;
   private int startGroupID = 0;
   private int lowerTests = 5;
+  private int threads = 1;
+  private int batchSize = 1000;
+  private boolean incremental = false;
+  private boolean blobCache = false;
+  private String branch = null;
+  private int historyStep = 0;
+  private boolean historyTags = false;
+  private long maxFileSize = Long.MAX_VALUE;
+  private boolean batchParse = false;
+  private boolean signatureScreening = false;
+  private boolean rawSource = false;
+  private Path typesPath = null;
+  private List<String> typePackages = Collections.emptyList();
+  private Fingerprint fingerprint = null;
+  private boolean bulkLoad = false;
+  private boolean uncompressed = false;
+  private int chunkSize = 500;
+  private int commitGroup = 256;
+  private int commitWindow = 100;
 
   public Path getDatabase() {
     return this.dbPath;
@@ -60,6 +85,17 @@ public class IVConfig {
         .toAbsolutePath();
   }
 
+  public Path getManifestPath() {
+    return this.manifestPath;
+  }
+
+  @Option(name = "-m", required = false, aliases = "--manifest", metaVar = "<manifest>",
+      usage = "path to file listing Git repositories (and optionally refs) to be registered")
+  public void setManifestPath(final String path) {
+    this.manifestPath = Paths.get(path)
+        .toAbsolutePath();
+  }
+
   public JavaVersion getJavaVersion() {
     return this.javaVersion;
   }
@@ -132,4 +168,247 @@ public class IVConfig {
     }
     this.lowerTests = lowerTests;
   }
+
+  public int getThreads() {
+    return this.threads;
+  }
+
+  @Option(name = "-p", required = false, aliases = "--threads", metaVar = "<threads>",
+      usage = "number of threads used to parse source files or to register repositories in manifest")
+  public void setThreads(final int threads) {
+    if (threads < 1) {
+      System.err.println("an positive integer must be specified for threads.");
+      System.exit(0);
+    }
+    this.threads = threads;
+  }
+
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  @Option(name = "-b", required = false, aliases = "--batch-size", metaVar = "<size>",
+      usage = "number of methods written to database in a transaction")
+  public void setBatchSize(final int batchSize) {
+    if (batchSize < 1) {
+      System.err.println("an positive integer must be specified for batch size.");
+      System.exit(0);
+    }
+    this.batchSize = batchSize;
+  }
+
+  public boolean isIncremental() {
+    return this.incremental;
+  }
+
+  @Option(name = "-i", required = false, aliases = "--incremental",
+      usage = "register only files changed since the last registered revision")
+  public void setIncremental(final boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  public boolean useBlobCache() {
+    return this.blobCache;
+  }
+
+  @Option(name = "-c", required = false, aliases = "--blob-cache",
+      usage = "reuse methods extracted from identical files registered before")
+  public void setBlobCache(final boolean blobCache) {
+    this.blobCache = blobCache;
+  }
+
+  public String getBranch() {
+    return this.branch;
+  }
+
+  @Option(name = "-B", required = false, aliases = "--branch", metaVar = "<branch>",
+      usage = "branch (or any ref) of Git repository to be registered")
+  public void setBranch(final String branch) {
+    this.branch = branch;
+  }
+
+  /**
+   * 履歴を登録する場合に，何コミットごとに登録するかを返す．履歴を登録しない場合は0を返す．
+   *
+   * @return
+   */
+  public int getHistoryStep() {
+    return this.historyStep;
+  }
+
+  public boolean isHistoryTags() {
+    return this.historyTags;
+  }
+
+  @Option(name = "-H", required = false, aliases = "--history", metaVar = "<all|tags|N>",
+      usage = "register every commit, tagged commits or every N-th commit on the branch")
+  public void setHistory(final String history) {
+    if (history.equals("all")) {
+      this.historyStep = 1;
+    } else if (history.equals("tags")) {
+      this.historyStep = 1;
+      this.historyTags = true;
+    } else {
+      try {
+        this.historyStep = Integer.parseInt(history);
+      } catch (final NumberFormatException e) {
+        this.historyStep = 0;
+      }
+      if (this.historyStep < 1) {
+        System.err.println("an invalid value is specified for option \"-H\".");
+        System.err.println("specify \"all\", \"tags\" or a positive integer.");
+        System.exit(0);
+      }
+    }
+  }
+
+  public long getMaxFileSize() {
+    return this.maxFileSize;
+  }
+
+  @Option(name = "-s", required = false, aliases = "--max-file-size", metaVar = "<bytes>",
+      usage = "skip source files larger than the specified size")
+  public void setMaxFileSize(final long maxFileSize) {
+    if (maxFileSize < 1) {
+      System.err.println("an positive integer must be specified for max file size.");
+      System.exit(0);
+    }
+    this.maxFileSize = maxFileSize;
+  }
+
+  public boolean isBatchParse() {
+    return this.batchParse;
+  }
+
+  @Option(name = "-P", required = false, aliases = "--batch-parse",
+      usage = "parse source files of a directory in batches with a single JDT call (not with -S or -R)")
+  public void setBatchParse(final boolean batchParse) {
+    this.batchParse = batchParse;
+  }
+
+  public boolean isSignatureScreening() {
+    return this.signatureScreening;
+  }
+
+  @Option(name = "-S", required = false, aliases = "--screen-signatures",
+      usage = "skip parsing method bodies of files without any eligible method signature")
+  public void setSignatureScreening(final boolean signatureScreening) {
+    this.signatureScreening = signatureScreening;
+  }
+
+  public boolean isRawSource() {
+    return this.rawSource;
+  }
+
+  @Option(name = "-R", required = false, aliases = "--raw-source",
+      usage = "take raw text of methods from source code as it is instead of re-rendering AST")
+  public void setRawSource(final boolean rawSource) {
+    this.rawSource = rawSource;
+  }
+
+  public Path getTypesPath() {
+    return this.typesPath;
+  }
+
+  @Option(name = "-T", required = false, aliases = "--types", metaVar = "<file>",
+      usage = "file listing target types, one fully qualified name or package.* per line")
+  public void setTypesPath(final String path) {
+    this.typesPath = Paths.get(path)
+        .toAbsolutePath();
+  }
+
+  public List<String> getTypePackages() {
+    return this.typePackages;
+  }
+
+  @Option(name = "-E", required = false, aliases = "--type-packages", metaVar = "<package>[,...]",
+      usage = "JDK packages whose public classes are added to target types (e.g. java.math)")
+  public void setTypePackages(final String packages) {
+    this.typePackages = Arrays.stream(packages.split(","))
+        .map(String::trim)
+        .filter(p -> !p.isEmpty())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * 指定されたハッシュのアルゴリズムを返す．指定されていなければnullを返し，データベースに記録されたものを用いる．
+   *
+   * @return
+   */
+  public Fingerprint getFingerprint() {
+    return this.fingerprint;
+  }
+
+  @Option(name = "-a", required = false, aliases = "--hash", metaVar = "<algorithm>",
+      usage = "hash algorithm of normalized text for a new database: \"murmur3\" or \"md5\"")
+  public void setFingerprint(final String name) {
+    this.fingerprint = Fingerprint.get(name);
+    if (null == this.fingerprint) {
+      System.err.println("an invalid value is specified for option \"-a\".");
+      System.err.println("specify \"murmur3\" or \"md5\".");
+      System.exit(1);
+    }
+  }
+
+  public boolean isBulkLoad() {
+    return this.bulkLoad;
+  }
+
+  @Option(name = "-L", required = false, aliases = "--bulk-load",
+      usage = "tune database for loading many methods (WAL journal, relaxed sync, larger cache)")
+  public void setBulkLoad(final boolean bulkLoad) {
+    this.bulkLoad = bulkLoad;
+  }
+
+  public boolean isUncompressed() {
+    return this.uncompressed;
+  }
+
+  @Option(name = "-U", required = false, aliases = "--uncompressed",
+      usage = "store method texts and tests in database without compression")
+  public void setUncompressed(final boolean uncompressed) {
+    this.uncompressed = uncompressed;
+  }
+
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  @Option(name = "-C", required = false, aliases = "--chunk-size", metaVar = "<size>",
+      usage = "number of rows sent to database in a single batch of inserts")
+  public void setChunkSize(final int chunkSize) {
+    if (chunkSize < 1) {
+      System.err.println("an positive integer must be specified for chunk size.");
+      System.exit(0);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  public int getCommitGroup() {
+    return this.commitGroup;
+  }
+
+  @Option(name = "-G", required = false, aliases = "--commit-group", metaVar = "<size>",
+      usage = "max number of status updates (compilable, tests, pairs) committed together")
+  public void setCommitGroup(final int commitGroup) {
+    if (commitGroup < 1) {
+      System.err.println("an positive integer must be specified for commit group.");
+      System.exit(0);
+    }
+    this.commitGroup = commitGroup;
+  }
+
+  public int getCommitWindow() {
+    return this.commitWindow;
+  }
+
+  @Option(name = "-W", required = false, aliases = "--commit-window", metaVar = "<milliseconds>",
+      usage = "max time a status update waits for others before it is committed")
+  public void setCommitWindow(final int commitWindow) {
+    if (commitWindow < 1) {
+      System.err.println("an positive integer must be specified for commit window.");
+      System.exit(0);
+    }
+    this.commitWindow = commitWindow;
+  }
 }
@@ -1,8 +1,9 @@
 package iv;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.jdt.core.formatter.DefaultCodeFormatterConstants;
 
 public enum JavaVersion {
 
@@ -106,9 +107,26 @@ public enum JavaVersion {
     }
   }
 
+  // 構文解析のたびに作り直さないように，バージョンごとに一度だけ作成して共有する
+  private volatile Map<String, String> options;
+
+  /**
+   * このバージョンのソースコードを構文解析するためのコンパイラオプションを返す．返すマップは変更できない．
+   *
+   * @return
+   */
   public Map<String, String> getOptions() {
-    @SuppressWarnings("unchecked")
-    final Map<String, String> options = DefaultCodeFormatterConstants.getEclipseDefaultSettings();
+    Map<String, String> options = this.options;
+    if (null == options) {
+      options = Collections.unmodifiableMap(createOptions());
+      this.options = options;
+    }
+    return options;
+  }
+
+  private Map<String, String> createOptions() {
+    // 構文解析にはコンパイラに関するオプションのみが使われるので，フォーマッタの設定は含めない
+    final Map<String, String> options = new HashMap<>();
     final String javaCore = this.getJavaCore();
     options.put(JavaCore.COMPILER_COMPLIANCE, javaCore);
     options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, javaCore);
@@ -4,8 +4,15 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -13,7 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import iv.ast.JavaMethodExtractor;
 import iv.data.JavaMethod;
+import iv.data.SourceScreen;
+import iv.db.BlobCache;
 import iv.db.JavaMethodDAO;
+import iv.db.MethodWriter;
+import iv.fs.SourceDirectory;
 import iv.git.GitRepo;
 import iv.util.Timer;
 
@@ -21,6 +32,7 @@ public class Registerer {
 
   private static final Logger logger = LoggerFactory.getLogger(Registerer.class);
   private final IVConfig config;
+  private BlobCache blobCache;
 
   public Registerer(final IVConfig config) {
     logger.trace("enter Registerer(JMCConfig)");
@@ -55,72 +67,230 @@ public class Registerer {
   public void exec() {
     logger.trace("enter exec()");
 
-    final List<JavaMethod> javaMethods = new ArrayList<>();
     final Path filePath = config.getFilePath();
     final Path repoPath = config.getRepoPath();
-    if (null == filePath && null == repoPath) {
-      System.err.println("either of \"-f\" or \"-r\" must be specified.");
+    final Path manifestPath = config.getManifestPath();
+    final long specified = Stream.of(filePath, repoPath, manifestPath)
+        .filter(p -> null != p)
+        .count();
+    if (0 == specified) {
+      System.err.println("either of \"-f\", \"-r\" or \"-m\" must be specified.");
       System.exit(0);
-    } else if (null != filePath && null != repoPath) {
-      System.err.println("both of \"-f\" and \"-r\" must not be specified.");
-      System.err.println("please specify either of them.");
+    } else if (1 < specified) {
+      System.err.println("two or more of \"-f\", \"-r\" and \"-m\" must not be specified.");
+      System.err.println("please specify one of them.");
       System.exit(0);
-    } else if (null != filePath) {
-      javaMethods.addAll(getJavaMethods(filePath));
-    } else if (null != repoPath) {
-      final GitRepo gitRepo = new GitRepo(config);
-      final RevCommit headCommit = gitRepo.getHeadCommit();
-      javaMethods.addAll(gitRepo.getJavaMethods(headCommit));
     }
 
+    // 一括構文解析ではソースコードを保持しないので，シグネチャによる選別と生文字列の切り出しはできない
+    if (config.isBatchParse() && (config.isSignatureScreening() || config.isRawSource())) {
+      System.err.println("\"-P\" must not be specified with \"-S\" or \"-R\".");
+      System.exit(0);
+    }
+
+    // 抽出したメソッドは順次書き込みスレッドに渡し，全体をメモリ上に保持しない
     JavaMethodDAO.SINGLETON.initialize(config);
-    JavaMethodDAO.SINGLETON.addMethods(javaMethods.stream()
-        .filter(m -> !m.isTest())
-        .filter(m -> !m.isToy())
-        .collect(
-            Collectors.toList()));
-    final long tests = javaMethods.stream()
-        .filter(m -> m.isTest())
-        .count();
-    final long toys = javaMethods.stream()
-        .filter(m -> m.isToy())
-        .count();
-    System.out.println("tests: " + tests);
-    System.out.println("toys: " + toys);
+    final MethodWriter writer = new MethodWriter(JavaMethodDAO.SINGLETON, config.getBatchSize());
+    writer.start();
+    if (config.useBlobCache()) {
+      blobCache = new BlobCache(JavaMethodDAO.SINGLETON,
+          new JavaMethodExtractor(config, null, null).getProfile(), config.getBatchSize());
+    }
+
+    final SourceScreen screen = new SourceScreen();
+    final List<Registration> registrations = new ArrayList<>();
+
+    // 割り込みなどで抽出が中断されても，書き込みスレッドは必ず終了させる
+    try {
+      if (null != filePath) {
+        final SourceDirectory sourceDirectory = new SourceDirectory(config, filePath);
+        sourceDirectory.setSourceScreen(screen);
+        sourceDirectory.extractJavaMethods(writer);
+      } else if (null != repoPath) {
+        final GitRepo gitRepo = new GitRepo(config);
+        final String branch = config.getBranch();
+        final RevCommit headCommit = null != branch ? gitRepo.getCommit(branch)
+            : gitRepo.getHeadCommit();
+        if (null == headCommit) {
+          System.err.println("cannot resolve " + branch);
+          System.exit(0);
+        }
+        gitRepo.setSourceScreen(screen);
+        registrations.add(registerRepository(gitRepo, headCommit, writer));
+      } else {
+        registrations.addAll(registerManifest(manifestPath, screen, writer));
+      }
+    } finally {
+      writer.close();
+    }
+
+    if (null != blobCache) {
+      blobCache.flush();
+      System.out.println(blobCache.getStatistics());
+    }
+
+    // 次回の差分登録のために，登録が完了したリビジョンを記録する
+    // 書き込みスレッドが全てのメソッドを書き込んだ後に記録する必要がある
+    for (final Registration registration : registrations) {
+      if (null == registration || null == registration.revision) {
+        continue;
+      }
+      JavaMethodDAO.SINGLETON.addRegistration(registration.remoteUrl, registration.revision);
+    }
+    System.out.println("tests: " + screen.getTests() + " files, " + screen.getTestDirectories()
+        + " directories");
+    System.out.println("toys: " + screen.getToys() + " files, " + screen.getToyDirectories()
+        + " directories");
+    System.out.println(writer.getStatistics());
+    if (0 < JavaMethodDAO.SINGLETON.getConflictCount()) {
+      System.out.println(
+          "already registered methods: " + JavaMethodDAO.SINGLETON.getConflictCount());
+    }
     JavaMethodDAO.SINGLETON.close();
   }
 
-  private List<JavaMethod> getJavaMethods(final Path dir) {
-    final List<JavaMethod> javaMethods = new ArrayList<>();
+  /**
+   * マニフェストファイルに列挙されたリポジトリを，一つのプロセス内で並行に登録する．
+   * マニフェストファイルの各行には，リポジトリのパスと，必要であれば登録するrefを空白区切りで記述する．
+   * 空行および#で始まる行は無視する．あるリポジトリの登録に失敗しても他のリポジトリの登録は続ける．
+   *
+   * @param manifestPath
+   * @param screen
+   * @param writer
+   * @return 登録に成功したリポジトリ
+   */
+  private List<Registration> registerManifest(final Path manifestPath,
+      final SourceScreen screen, final MethodWriter writer) {
 
-    // dirがファイルのとき
-    if (Files.isRegularFile(dir)) {
-      final String fileName = dir.toString();
-      if (fileName.endsWith(".java")) {
-        final JavaMethodExtractor extractor = new JavaMethodExtractor(config, null, null);
-        try {
-          final String text = Files.readString(dir);
-          final List<JavaMethod> methods = extractor.getJavaMethods(dir.toString(), text);
-          javaMethods.addAll(methods);
-        } catch (final IOException e) {
-          System.err.println(e.getMessage());
+    final List<String[]> entries = new ArrayList<>();
+    try {
+      for (final String line : Files.readAllLines(manifestPath)) {
+        final String trimmedLine = line.trim();
+        if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+          continue;
         }
+        entries.add(trimmedLine.split("\\s+"));
       }
+    } catch (final IOException e) {
+      System.err.println("cannot read manifest: " + manifestPath);
+      System.exit(0);
+    }
+
+    // リポジトリ単位で並行に処理するので，各リポジトリの構文解析は逐次に行う
+    final List<Registration> registrations = Collections.synchronizedList(new ArrayList<>());
+    final ExecutorService executorService = Executors.newFixedThreadPool(config.getThreads());
+    final AtomicInteger failures = new AtomicInteger(0);
+    for (int index = 0; index < entries.size(); index++) {
+      final String[] entry = entries.get(index);
+      final Path repoPath = manifestPath.resolveSibling(entry[0])
+          .normalize();
+      final String ref = 1 < entry.length ? entry[1]
+          : null != config.getBranch() ? config.getBranch() : Constants.HEAD;
+      final String label = "[" + (index + 1) + "/" + entries.size() + "] " + repoPath + " (" + ref
+          + ")";
+      executorService.execute(() -> {
+        final Timer timer = new Timer();
+        timer.start();
+        GitRepo gitRepo = null;
+        try {
+          gitRepo = new GitRepo(config, repoPath);
+          gitRepo.setThreads(1);
+          gitRepo.setSourceScreen(screen);
+          final RevCommit commit = gitRepo.getCommit(ref);
+          if (null == commit) {
+            throw new IOException("cannot resolve " + ref);
+          }
+          final Registration registration = registerRepository(gitRepo, commit, writer);
+          if (null == registration) {
+            throw new IOException("some files could not be extracted");
+          }
+          registrations.add(registration);
+          timer.stop();
+          System.out.println(label + ": registered in " + timer);
+        } catch (final Exception e) {
+          failures.incrementAndGet();
+          timer.stop();
+          System.err.println(label + ": failed in " + timer + " (" + e + ")");
+        } finally {
+          if (null != gitRepo) {
+            gitRepo.close();
+          }
+        }
+      });
     }
 
-    // dirがディレクトリのとき
-    else if (Files.isDirectory(dir)) {
+    executorService.shutdown();
+    try {
+      executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      e.printStackTrace();
+    }
+
+    System.out.println("registered repositories: " + registrations.size() + ", failed: "
+        + failures.get());
+    return registrations;
+  }
 
-      try {
-        Files.list(dir)
-            .forEach(c -> javaMethods.addAll(getJavaMethods(c)));
-      } catch (final IOException e) {
-        System.err.println(e.getMessage());
+  private Registration registerRepository(final GitRepo gitRepo, final RevCommit headCommit,
+      final Consumer<JavaMethod> consumer) {
+    final String remoteUrl = gitRepo.getRemoteUrl();
+    gitRepo.setBlobCache(blobCache);
+
+    // 履歴を登録する場合は，先端までの各コミットを古い順に登録する
+    if (0 < config.getHistoryStep()) {
+      final List<RevCommit> commits = gitRepo.getHistory(headCommit, config.getHistoryStep(),
+          config.isHistoryTags());
+      final boolean completed = gitRepo.extractJavaMethods(commits, consumer);
+
+      // 先端のコミットを登録していない場合は，差分登録の起点として記録しない
+      if (!completed) {
+        return incomplete(headCommit);
       }
+      return new Registration(remoteUrl, commits.contains(headCommit) ? headCommit.getName()
+          : null);
     }
 
-    return javaMethods;
+    // 差分登録の場合は，前回登録したリビジョンから変更されたファイルのみを解析する
+    final RevCommit lastCommit = config.isIncremental() ? gitRepo.getCommit(
+        JavaMethodDAO.SINGLETON.getLastRevision(remoteUrl)) : null;
+    boolean completed = true;
+    if (null == lastCommit) {
+      completed = gitRepo.extractJavaMethods(headCommit, consumer);
+    } else if (lastCommit.equals(headCommit)) {
+      System.out.println("already registered: " + GitRepo.getAbbreviatedID(headCommit));
+    } else {
+      System.out.println("registering changes since " + GitRepo.getAbbreviatedID(lastCommit));
+      completed = gitRepo.extractJavaMethods(lastCommit, headCommit, consumer);
+
+      // 変更もしくは削除されたファイルの古いメソッドを引退させる
+      // 新しいリビジョンで登録されるメソッドは対象外なので，書き込みの完了を待つ必要はない
+      final List<String> stalePaths = gitRepo.getStaleJavaFiles(lastCommit, headCommit);
+      final int retired = JavaMethodDAO.SINGLETON.retireMethods(remoteUrl, stalePaths,
+          headCommit.getName());
+      System.out.println("retired methods: " + retired);
+    }
+    return completed ? new Registration(remoteUrl, headCommit.getName())
+        : incomplete(headCommit);
   }
 
+  // 解析が完了していないリビジョンは記録しないので，次回の差分登録では同じ起点から解析し直す
+  private Registration incomplete(final RevCommit headCommit) {
+    System.err.println("registration is incomplete; " + GitRepo.getAbbreviatedID(headCommit)
+        + " is not recorded as registered.");
+    return null;
+  }
 
+  /**
+   * 登録が完了したリポジトリとそのリビジョン．差分登録の起点として記録しない場合はリビジョンがnullとなる
+   */
+  private static class Registration {
+
+    final String remoteUrl;
+    final String revision;
+
+    Registration(final String remoteUrl, final String revision) {
+      this.remoteUrl = remoteUrl;
+      this.revision = revision;
+    }
+  }
 }
@@ -72,36 +72,32 @@ public class TestExecutor extends TestRunner {
     JavaMethodDAO.SINGLETON.initialize(config);
 
     try {
-      // 各カテゴリのディレクトリを得る
-      final List<Path> groupDirs = Files.list(outputPath)
-          .filter(Files::isDirectory)
-          .collect(Collectors.toList());
+      // 各カテゴリのディレクトリを，ディレクトリ名（グループID.シグネチャ）のグループIDで引けるようにする
+      final Map<Integer, Path> groupDirs = Classifier.getGroupDirs(outputPath);
 
       // 各カテゴリに対する処理のループ
-      // TODO このループを，指定された下限から上限の範囲のグループへのループに変更
-      // IVConfigに下限と条件を指定するためのオプションを指定する必要あり
+      // 分類の対象となるグループのうち，指定された下限から上限の範囲のものをグループIDの順に処理する
       final int lowerBound = config.getLowerBound();
       System.out.println("target lower bound is set to " + lowerBound);
       final int upperBound = config.getUpperBound();
       System.out.println("target upper bound is set to " + upperBound);
+      final List<Integer> candidates = JavaMethodDAO.SINGLETON.getCandidateGroups()
+          .keySet()
+          .stream()
+          .filter(groupID -> lowerBound <= groupID && groupID <= upperBound)
+          .collect(Collectors.toList());
+      System.out.println(candidates.size() + " method groups are in the range.");
 
       // TODO メソッドのグループIDは，シグネチャが同じグループ内でリセットするように変更済み．
       // TODO 実装はしたが，テストはまだ．
       final int startGroupID = config.getStartGroupID();
       final AtomicInteger methodGroupID = new AtomicInteger(startGroupID);
 
-      for (final Path groupDir : groupDirs) {
+      for (final int groupID : candidates) {
 
-        // TODO 対象のメソッドグループ以外の処理をしないように変更．
-        // TODO 実装はしたが，テストはまだ．
-        final String groupDirName = groupDir.getFileName()
-            .toString();
-        if (!groupDirName.contains(".")) {
-          System.out.println(groupDirName + " is not a directory for method group");
-          continue;
-        }
-        final int groupID = Integer.valueOf(groupDirName.substring(0, groupDirName.indexOf('.')));
-        if (groupID < lowerBound || upperBound < groupID) {
+        // 対象のグループのディレクトリが出力されていない場合は何もしない
+        final Path groupDir = groupDirs.get(groupID);
+        if (null == groupDir) {
           continue;
         }
 
@@ -1,13 +1,11 @@
 package iv.ast;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.Stack;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.ArrayType;
@@ -20,18 +18,16 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ContinueStatement;
 import org.eclipse.jdt.core.dom.DoStatement;
 import org.eclipse.jdt.core.dom.EmptyStatement;
-import org.eclipse.jdt.core.dom.EnhancedForStatement;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ExpressionStatement;
 import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IExtendedModifier;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.IntersectionType;
-import org.eclipse.jdt.core.dom.MarkerAnnotation;
+import org.eclipse.jdt.core.dom.Javadoc;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
-import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.NameQualifiedType;
-import org.eclipse.jdt.core.dom.NormalAnnotation;
 import org.eclipse.jdt.core.dom.NullLiteral;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.ParameterizedType;
@@ -41,7 +37,6 @@ import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SimpleType;
 import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
-import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.StringLiteral;
 import org.eclipse.jdt.core.dom.SwitchStatement;
 import org.eclipse.jdt.core.dom.SynchronizedStatement;
@@ -54,10 +49,10 @@ import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.dom.WhileStatement;
 import org.eclipse.jdt.core.dom.WildcardType;
 import org.eclipse.jdt.core.dom.YieldStatement;
-import org.eclipse.jdt.internal.compiler.ast.ForeachStatement;
 import org.eclipse.jgit.revwalk.RevCommit;
 import iv.IVConfig;
 import iv.data.JavaMethod;
+import iv.data.SourceSlice;
 
 public class JavaFileVisitor extends ASTVisitor {
 
@@ -66,226 +61,16 @@ public class JavaFileVisitor extends ASTVisitor {
   private final RevCommit commit;
   private final String path;
   private final List<JavaMethod> javaMethods;
-  private final AtomicInteger methodCount;
-  private final Stack<List<SimpleName>> variableNodesStack;
-  private final Stack<List<CharacterLiteral>> characterLiteralNodesStack;
-  private final Stack<List<NumberLiteral>> numberLiteralNodesStack;
-  private final Stack<List<StringLiteral>> stringLiteralNodesStack;
-  private final Stack<List<Statement>> statementsStack;
-  private final String[] javalangClasses = new String[] {
-      "AbstractMethodError",//
-      "Appendable",//
-      "ArithmeticException",//
-      "ArrayIndexOutOfBoundsException",//
-      "ArrayStoreException",//
-      "AssertionError",//
-      "AutoCloseable",//
-      "Boolean",//
-      "BootstrapMethodError",//
-      "Byte",//
-      "Character",//
-      "CharSequence",//
-      "Class",//
-      "ClassCastException",//
-      "ClassCircularityError",//
-      "ClassFormatError",//
-      "ClassLoader",//
-      "ClassNotFoundException",//
-      "ClassValue",//
-      "Cloneable",//
-      "CloneNotSupportedException",//
-      "Comparable",//
-      "Compiler",//
-      "Deprecated",//
-      "Double",//
-      "Enum",//
-      "EnumConstantNotPresentException",//
-      "Error",//
-      "Exception",//
-      "ExceptionInInitializerError",//
-      "Float",//
-      "FunctionalInterface",//
-      "IllegalAccessError",//
-      "IllegalAccessException",//
-      "IllegalArgumentException",//
-      "IllegalCallerException",//
-      "IllegalMonitorStateException",//
-      "IllegalStateException",//
-      "IllegalThreadStateException",//
-      "IncompatibleClassChangeError",//
-      "IndexOutOfBoundsException",//
-      "InheritableThreadLocal",//
-      "InstantiationError",//
-      "InstantiationException",//
-      "Integer",//
-      "InternalError",//
-      "InterruptedException",//
-      "Iterable",//
-      "LayerInstantiationException",//
-      "LinkageError",//
-      "Long",//
-      "Math",//
-      "Module",//
-      "ModuleLayer",//
-      "NegativeArraySizeException",//
-      "NoClassDefFoundError",//
-      "NoSuchFieldError",//
-      "NoSuchFieldException",//
-      "NoSuchMethodError",//
-      "NoSuchMethodException",//
-      "NullPointerException",//
-      "Number",//
-      "NumberFormatException",//
-      "Object",//
-      "OutOfMemoryError",//
-      "Override",//
-      "Package",//
-      "Process",//
-      "ProcessBuilder",//
-      "ProcessHandle",//
-      "Readable",//
-      "Record",//
-      "ReflectiveOperationException",//
-      "Runnable",//
-      "Runtime",//
-      "RuntimeException",//
-      "RuntimePermission",//
-      "SafeVarargs",//
-      "SecurityException",//
-      "SecurityManager",//
-      "Short",//
-      "StackOverflowError",//
-      "StackTraceElement",//
-      "StackWalker",//
-      "StrictMath",//
-      "String",//
-      "StringBuffer",//
-      "StringBuilder",//
-      "SuppressWarnings",//
-      "System",//
-      "Thread",//
-      "ThreadDeath",//
-      "ThreadGroup",//
-      "ThreadLocal",//
-      "Throwable",//
-      "TypeNotPresentException",//
-      "UnknownError",//
-      "UnsatisfiedLinkError",//
-      "UnsupportedClassVersionError",//
-      "UnsupportedOperationException",//
-      "VerifyError",//
-      "VirtualMachineError",//
-      "Void"//
-  };
-
-  private final String[] javautilClasses = new String[] {
-      "AbstractCollection",//
-      "AbstractList",//
-      "AbstractMap",//
-      "AbstractQueue",//
-      "AbstractSequentialList",//
-      "AbstractSet",//
-      "ArrayDeque",//
-      "ArrayList",//
-      "Arrays",//
-      "Base64",//
-      "BitSet",//
-      "Calendar",//
-      "Collection",//
-      "Collections",//
-      "Comparator",//
-      "ConcurrentModificationException",//
-      "Currency",//
-      "Date",//
-      "Deque",//
-      "Dictionary",//
-      "DoubleSummaryStatistics",//
-      "DuplicateFormatFlagsException",//
-      "EmptyStackException",//
-      "Enumeration",//
-      "EnumMap",//
-      "EnumSet",//
-      "EventListener",//
-      "EventListenerProxy",//
-      "EventObject",//
-      "FormatFlagsConversionMismatchException",//
-      "Formattable",//
-      "Formatter",//
-      "FormatterClosedException",//
-      "GregorianCalendar",//
-      "HashMap",//
-      "HashSet",//
-      "Hashtable",//
-      "HexFormat",//
-      "IdentityHashMap",//
-      "IllegalFormatCodePointException",//
-      "IllegalFormatConversionException",//
-      "IllegalFormatException",//
-      "IllegalFormatFlagsException",//
-      "IllegalFormatPrecisionException",//
-      "IllegalFormatWidthException",//
-      "IllformedLocaleException",//
-      "InputMismatchException",//
-      "IntSummaryStatistics",//
-      "InvalidPropertiesFormatException",//
-      "Iterator",//
-      "LinkedHashMap",//
-      "LinkedHashSet",//
-      "LinkedList",//
-      "List",//
-      "ListIterator",//
-      "ListResourceBundle",//
-      "Locale",//
-      "LongSummaryStatistics",//
-      "Map",//
-      "MissingFormatArgumentException",//
-      "MissingFormatWidthException",//
-      "MissingResourceException",//
-      "NavigableMap",//
-      "NavigableSet",//
-      "NoSuchElementException",//
-      "Objects",//
-      "Observable",//
-      "Observer",//
-      "Optional",//
-      "OptionalDouble",//
-      "OptionalInt",//
-      "OptionalLong",//
-      "PrimitiveIterator",//
-      "PriorityQueue",//
-      "Properties",//
-      "PropertyPermission",//
-      "PropertyResourceBundle",//
-      "Queue",//
-      "Random",//
-      "RandomAccess",//
-      "ResourceBundle",//
-      "Scanner",//
-      "ServiceConfigurationError",//
-      "ServiceLoader",//
-      "Set",//
-      "SimpleTimeZone",//
-      "SortedMap",//
-      "SortedSet",//
-      "Spliterator",//
-      "Spliterators",//
-      "SplittableRandom",//
-      "Stack",//
-      "StringJoiner",//
-      "StringTokenizer",//
-      "Timer",//
-      "TimerTask",//
-      "TimeZone",//
-      "TooManyListenersException",//
-      "TreeMap",//
-      "TreeSet",//
-      "UnknownFormatConversionException",//
-      "UnknownFormatFlagsException",//
-      "UUID",//
-      "Vector",//
-      "WeakHashMap",//
-  };
-
+  private final List<MethodFrame> frames;
+  private final TargetTypes targetTypes;
+  private final Map<ASTNode, String> replacements;
+  private final Set<ASTNode> strippedNodes;
+  private final MethodPrinter printer;
+  private char[] source;
+
+  private int methodCount;
+  private int depth;
+  private MethodFrame frame;
   private boolean isTarget;
 
   public JavaFileVisitor(final IVConfig config, final String remoteUrl, final RevCommit commit,
@@ -296,12 +81,24 @@ public class JavaFileVisitor extends ASTVisitor {
     this.path = path;
     this.isTarget = true;
     this.javaMethods = new ArrayList<>();
-    this.methodCount = new AtomicInteger(0);
-    this.characterLiteralNodesStack = new Stack<>();
-    this.numberLiteralNodesStack = new Stack<>();
-    this.stringLiteralNodesStack = new Stack<>();
-    this.variableNodesStack = new Stack<>();
-    this.statementsStack = new Stack<>();
+    this.methodCount = 0;
+    this.frames = new ArrayList<>();
+    this.depth = 0;
+    this.frame = null;
+    this.targetTypes = TargetTypes.get(config);
+    this.replacements = new IdentityHashMap<>();
+    this.strippedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.printer = new MethodPrinter(replacements, strippedNodes);
+  }
+
+  /**
+   * 構文解析したソースコードを設定する．設定した場合，メソッドの生文字列はASTから作らずにソースコードから切り出す．
+   * ただし，仮引数にアノテーションがあるメソッドの生文字列は，それを取り除くためにASTから作る．
+   *
+   * @param source
+   */
+  public void setSource(final char[] source) {
+    this.source = source;
   }
 
   public List<JavaMethod> getJavaMethods() {
@@ -309,7 +106,7 @@ public class JavaFileVisitor extends ASTVisitor {
   }
 
   public int getAllMethodCount() {
-    return methodCount.get();
+    return methodCount;
   }
 
   @Override
@@ -326,114 +123,168 @@ public class JavaFileVisitor extends ASTVisitor {
     }
 
     // メソッド数をインクリメント
-    methodCount.getAndIncrement();
+    methodCount++;
 
     // 正規化するノードを記録するための処理
-    characterLiteralNodesStack.push(new ArrayList<CharacterLiteral>());
-    numberLiteralNodesStack.push(new ArrayList<NumberLiteral>());
-    stringLiteralNodesStack.push(new ArrayList<StringLiteral>());
-    variableNodesStack.push(new ArrayList<SimpleName>());
+    pushFrame();
 
-    // 返値，引数，ボディのノードを取得
-    final Optional<Type> returnTypeOptional = Optional.ofNullable(node.getReturnType2());
+    // 引数，ボディのノードを取得
     final List<SingleVariableDeclaration> parameters = (List<SingleVariableDeclaration>) node.parameters();
-    final Optional<Block> bodyOptional = Optional.ofNullable(node.getBody());
-
-    // 仮引数のアノテーションを削除
-    node.modifiers()
-        .removeIf(m -> m instanceof MarkerAnnotation || m instanceof NormalAnnotation);
+    final Block body = node.getBody();
 
-    // 仮引数の修飾子を削除
-    node.modifiers()
-        .removeIf(m -> m instanceof Modifier);
-    parameters.stream()
-        .map(p -> p.modifiers())
-        .forEach(m -> m.clear());
+    // 仮引数のアノテーションは途中にあり切り出しでは除けないので，その場合はASTから作る
+    // 解決できない型のアノテーションが残ると，切り出したメソッドがコンパイルできないため
+    final boolean isSliced = null != source && parameters.stream()
+        .flatMap(p -> ((List<IExtendedModifier>) p.modifiers()).stream())
+        .noneMatch(IExtendedModifier::isAnnotation);
+    final int startPosition = isSliced ? getSourceStart(node) : node.getStartPosition();
 
-    // Javadocを削除
-    Optional.ofNullable(node.getJavadoc())
-        .ifPresent(j -> j.delete());
-
-    //　このメソッドの名前と生文字列を取り出しておく
-    // この処理はnode.getBody()に対するビジター処理よりも先になければいけない
-    final String methodName = node.getName()
-        .getIdentifier();
-    final String rawText = node.toString();
+    // メソッドのアノテーションと修飾子，仮引数の修飾子，Javadocを取り除いたものとして記録
+    // 対象外のメソッドでも，それを含むメソッドの文字列には現れないようにする
+    strippedNodes.add(node);
 
     // ボディが空なら条件を満たさない
-    if (bodyOptional.isEmpty()) {
-      characterLiteralNodesStack.pop();
-      numberLiteralNodesStack.pop();
-      stringLiteralNodesStack.pop();
-      variableNodesStack.pop();
+    if (null == body) {
+      popFrame();
       return false;
     }
     //ビジターを利用して，返値と引数が条件を満たすかチェック
-    isTarget = true;
-    returnTypeOptional.ifPresent(r -> r.accept(this));
-    parameters.forEach(p -> p.accept(this));
-    if (!isTarget) {
-      characterLiteralNodesStack.pop();
-      numberLiteralNodesStack.pop();
-      stringLiteralNodesStack.pop();
-      variableNodesStack.pop();
+    if (!hasTargetTypes(node)) {
+      popFrame();
       return false;
     }
 
     //ビジターを利用して，メソッドボディが条件を満たすかチェック
     //返値と引数のチェックのあとのif文を取り除いてはいけない
-    statementsStack.push(new ArrayList<Statement>());
-    bodyOptional.ifPresent(b -> b.accept(this));
-    final List<Statement> statements = statementsStack.pop();
+    body.accept(this);
     if (!isTarget) {
-      characterLiteralNodesStack.pop();
-      numberLiteralNodesStack.pop();
-      stringLiteralNodesStack.pop();
-      variableNodesStack.pop();
+      popFrame();
       return false;
     }
 
-    // このメソッドの正規化文字列を取得
-    final List<CharacterLiteral> characterLiteralNodes = characterLiteralNodesStack.pop();
-    characterLiteralNodes.forEach(n -> n.setCharValue('$'));
-    ;
-    final List<NumberLiteral> numberLiteralNodes = numberLiteralNodesStack.pop();
-    numberLiteralNodes.forEach(n -> n.setToken("0"));
-    final List<StringLiteral> stringLiteralNodes = stringLiteralNodesStack.pop();
-    stringLiteralNodes.forEach(n -> n.setLiteralValue("$string"));
-    final List<SimpleName> variableNodes = variableNodesStack.pop();
-    variableNodes.forEach(n -> n.setIdentifier("$variable"));
-    node.getName()
-        .setIdentifier("$method");
-    final String normalizedText = node.toString();
+    // 正規化するノードを記録し，正規化文字列と（切り出さない場合は）生文字列を一度の走査で作る
+    // ASTは書き換えないので，生文字列にはボディ内の正規化は現れない
+    final MethodFrame methodFrame = frame;
+    for (final CharacterLiteral characterLiteral : methodFrame.characterLiterals) {
+      replacements.put(characterLiteral, "'$'");
+    }
+    for (final NumberLiteral numberLiteral : methodFrame.numberLiterals) {
+      replacements.put(numberLiteral, "0");
+    }
+    for (final StringLiteral stringLiteral : methodFrame.stringLiterals) {
+      replacements.put(stringLiteral, "\"$string\"");
+    }
+    for (final SimpleName variable : methodFrame.variables) {
+      replacements.put(variable, "$variable");
+    }
+    replacements.put(node.getName(), "$method");
+    printer.print(node, !isSliced);
+    final String methodName = node.getName()
+        .getIdentifier();
+    final CharSequence rawText = isSliced ? getSourceSlice(node, startPosition)
+        : printer.getRawText();
+    final String normalizedText = printer.getNormalizedText();
 
     // 返値，メソッド名，メソッド全体の文字列, 正規化後の文字列，パスを利用してメソッドオブジェクトを生成
-    final String returnType = returnTypeOptional.map(ASTNode::toString)
-        .orElse("void");
-    final int branches = getBranchNumber(statements);
+    final int statements = methodFrame.statements;
+    final int branches = methodFrame.branches;
+    popFrame();
     final CompilationUnit rootNode = (CompilationUnit) node.getRoot();
-    final int startLine = rootNode.getLineNumber(node.getStartPosition());
+    final int startLine = rootNode.getLineNumber(startPosition);
     final int endLine = rootNode.getLineNumber(node.getStartPosition() + node.getLength());
-    final JavaMethod method = new JavaMethod(returnType, methodName, rawText, normalizedText,
-        statements.size(), branches, path, startLine, endLine, remoteUrl, commit);
+    final JavaMethod method = new JavaMethod(printer.getReturnType(), methodName, rawText,
+        normalizedText, statements, branches, path, startLine, endLine, remoteUrl, commit);
 
     // 引数の型を追加する
-    for (final SingleVariableDeclaration parameter : parameters) {
-      final Type type = parameter.getType();
-      method.addParameter(type.toString());
+    for (final String parameterType : printer.getParameterTypes()) {
+      method.addParameter(parameterType);
     }
 
     javaMethods.add(method);
     return false;
   }
 
-  private int getBranchNumber(final List<Statement> statements) {
-    return (int) statements.stream()
-        .filter(s -> s.getClass() == DoStatement.class || s.getClass() == ForStatement.class
-            || s.getClass() == EnhancedForStatement.class
-            || s.getClass() == IfStatement.class || s.getClass() == SwitchStatement.class
-            || s.getClass() == WhileStatement.class)
-        .count();
+  /**
+   * 引数で与えられたメソッドの，Javadoc，アノテーション，修飾子を除いた部分をソースコードから切り出す．
+   *
+   * @param node
+   * @param start getSourceStartで求めた開始位置
+   * @return
+   */
+  private SourceSlice getSourceSlice(final MethodDeclaration node, final int start) {
+    final int end = node.getStartPosition() + node.getLength();
+    return new SourceSlice(source, start, end - start);
+  }
+
+  private int getSourceStart(final MethodDeclaration node) {
+    int start = node.getStartPosition();
+    final Javadoc javadoc = node.getJavadoc();
+    if (null != javadoc) {
+      start = Math.max(start, javadoc.getStartPosition() + javadoc.getLength());
+    }
+    for (final ASTNode modifier : (List<ASTNode>) node.modifiers()) {
+      start = Math.max(start, modifier.getStartPosition() + modifier.getLength());
+    }
+    final int end = node.getStartPosition() + node.getLength();
+    while (start < end && Character.isWhitespace(source[start])) {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * 引数で与えられたメソッドの返値と引数の型が，全て対象の型であればtrueを返す．
+   * メソッドボディは見ないので，ボディを省略して構文解析したASTにも使える．
+   *
+   * @param node
+   * @return
+   */
+  boolean hasTargetTypes(final MethodDeclaration node) {
+    isTarget = true;
+    final Type returnType = node.getReturnType2();
+    if (null != returnType) {
+      returnType.accept(this);
+    }
+
+    // 仮引数の修飾子とアノテーションは取り除かれるものなので，それ以外の子ノードのみを訪問する
+    // シグネチャによる選別では，修飾子を取り除いていないASTに対して呼ばれる
+    for (final SingleVariableDeclaration parameter : (List<SingleVariableDeclaration>) node
+        .parameters()) {
+      parameter.getType()
+          .accept(this);
+      ((List<ASTNode>) parameter.varargsAnnotations()).forEach(a -> a.accept(this));
+      parameter.getName()
+          .accept(this);
+      ((List<ASTNode>) parameter.extraDimensions()).forEach(d -> d.accept(this));
+    }
+    return isTarget;
+  }
+
+  private void pushFrame() {
+    if (depth == frames.size()) {
+      frames.add(new MethodFrame());
+    }
+    frame = frames.get(depth++);
+    frame.clear();
+  }
+
+  private void popFrame() {
+    depth--;
+    frame = 0 < depth ? frames.get(depth - 1) : null;
+  }
+
+  private void countStatement() {
+    if (null != frame) {
+      frame.statements++;
+    }
+  }
+
+  // do文，for文，拡張for文，if文，switch文，while文を分岐として数える
+  private void countBranch() {
+    if (null != frame) {
+      frame.statements++;
+      frame.branches++;
+    }
   }
 
   @Override
@@ -476,10 +327,12 @@ public class JavaFileVisitor extends ASTVisitor {
 
   @Override
   public boolean visit(final SimpleType node) {
-    final String typeName = node.toString();
-    // java.langもしくはjava.utilのいずれのクラス名にも一致しない場合は対象外のクラスと見なす
-    if (!Stream.concat(Arrays.stream(javalangClasses), Arrays.stream(javautilClasses))
-        .anyMatch(c -> c.equals(typeName))) {
+    // 型の注釈がなければ，toStringの出力は名前と同じになる
+    final String typeName = node.annotations()
+        .isEmpty() ? node.getName()
+            .getFullyQualifiedName() : node.toString();
+    // 対象の型（既定ではjava.langもしくはjava.utilのクラス）のいずれにも一致しない場合は対象外のクラスと見なす
+    if (!targetTypes.contains(typeName)) {
       isTarget = false;
     }
     return false;
@@ -499,63 +352,56 @@ public class JavaFileVisitor extends ASTVisitor {
 
   @Override
   public boolean visit(final SimpleName node) {
-    if (!variableNodesStack.isEmpty()) {
-      final List<SimpleName> normalizationTargetNodes = variableNodesStack.peek();
-      normalizationTargetNodes.add(node);
+    if (null != frame) {
+      frame.variables.add(node);
     }
     return false;
   }
 
   @Override
   public boolean visit(final CharacterLiteral node) {
-    if (!characterLiteralNodesStack.isEmpty()) {
-      final List<CharacterLiteral> normalizationTargetNodes = characterLiteralNodesStack.peek();
-      normalizationTargetNodes.add(node);
+    if (null != frame) {
+      frame.characterLiterals.add(node);
     }
     return false;
   }
 
   @Override
   public boolean visit(final NumberLiteral node) {
-    if (!numberLiteralNodesStack.isEmpty()) {
-      final List<NumberLiteral> normalizationTargetNodes = numberLiteralNodesStack.peek();
-      normalizationTargetNodes.add(node);
+    if (null != frame) {
+      frame.numberLiterals.add(node);
     }
     return false;
   }
 
   @Override
   public boolean visit(final StringLiteral node) {
-    if (!stringLiteralNodesStack.isEmpty()) {
-      final List<StringLiteral> normalizationTargetNodes = stringLiteralNodesStack.peek();
-      normalizationTargetNodes.add(node);
+    if (null != frame) {
+      frame.stringLiterals.add(node);
     }
     return false;
   }
 
   @Override
   public boolean visit(final MethodInvocation node) {
-    final Optional<Expression> expression = Optional.ofNullable(node.getExpression());
+    final Expression expression = node.getExpression();
     // メソッド呼び出しのプレフィックスがない場合には自クラスのメソッドを呼び出していることになるが，
     // メソッド単体で切り出しているため他のメソッドはない．よってコンパイルできず対象外になる．
-    if (expression.isEmpty()) {
+    if (null == expression) {
       isTarget = false;
       return false;
     }
-    expression.ifPresent(e -> e.accept(this));
-    node.arguments()
-        .stream()
-        .forEach(n -> ((ASTNode) n).accept(this));
+    expression.accept(this);
+    for (final Object argument : node.arguments()) {
+      ((ASTNode) argument).accept(this);
+    }
     return false;
   }
 
   @Override
   public boolean visit(final ReturnStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     // return文のオペランドがない場合はvoid返値であり対象外
     final Expression operand = node.getExpression();
@@ -585,10 +431,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final AssertStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -596,10 +439,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final BreakStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -607,10 +447,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final ContinueStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -618,10 +455,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final DoStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countBranch();
 
     return super.visit(node);
   }
@@ -629,10 +463,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final EmptyStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -640,10 +471,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final ExpressionStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -651,10 +479,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final ForStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countBranch();
 
     return super.visit(node);
   }
@@ -662,10 +487,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final IfStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countBranch();
 
     return super.visit(node);
   }
@@ -673,10 +495,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final SwitchStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countBranch();
 
     return super.visit(node);
   }
@@ -684,10 +503,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final SynchronizedStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -695,10 +511,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final ThrowStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     // メソッドの中に単一のThrow文のみがある場合は対象外．
     final ASTNode parent = node.getParent();
@@ -718,10 +531,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final TypeDeclarationStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -729,10 +539,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final TryStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
@@ -740,14 +547,13 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final VariableDeclarationStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
-    // 修飾子を削除
-    node.modifiers()
-        .removeIf(m -> m instanceof Modifier);
+    // 修飾子を取り除いたものとして記録
+    if (!node.modifiers()
+        .isEmpty()) {
+      strippedNodes.add(node);
+    }
 
     return super.visit(node);
   }
@@ -755,10 +561,7 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final WhileStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countBranch();
 
     return super.visit(node);
   }
@@ -766,21 +569,41 @@ public class JavaFileVisitor extends ASTVisitor {
   @Override
   public boolean visit(final YieldStatement node) {
 
-    if (!statementsStack.isEmpty()) {
-      statementsStack.peek()
-          .add(node);
-    }
+    countStatement();
 
     return super.visit(node);
   }
 
   @Override
   public void endVisit(final ClassInstanceCreation node) {
-    // もし型引数があるなら，それを取り除く
+    // もし型引数があるなら，それを取り除いたものとして記録
     final Type type = node.getType();
-    if (type.isParameterizedType()) {
-      ((ParameterizedType) type).typeArguments()
-          .clear();
+    if (type.isParameterizedType() && !((ParameterizedType) type).typeArguments()
+        .isEmpty()) {
+      strippedNodes.add(type);
+    }
+  }
+
+  /**
+   * 訪問中のメソッドごとに，正規化するノードと文や分岐の数を記録する．
+   * メソッドを訪問するたびには作らず，入れ子の深さごとに再利用する．
+   */
+  private static class MethodFrame {
+
+    final List<CharacterLiteral> characterLiterals = new ArrayList<>();
+    final List<NumberLiteral> numberLiterals = new ArrayList<>();
+    final List<StringLiteral> stringLiterals = new ArrayList<>();
+    final List<SimpleName> variables = new ArrayList<>();
+    int statements;
+    int branches;
+
+    void clear() {
+      characterLiterals.clear();
+      numberLiterals.clear();
+      stringLiterals.clear();
+      variables.clear();
+      statements = 0;
+      branches = 0;
     }
   }
 }
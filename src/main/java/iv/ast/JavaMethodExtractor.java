@@ -1,16 +1,17 @@
 package iv.ast;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import org.eclipse.jdt.core.compiler.IProblem;
-import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 import org.eclipse.jgit.revwalk.RevCommit;
 import iv.IVConfig;
-import iv.JavaVersion;
 import iv.data.JavaMethod;
 
 public class JavaMethodExtractor {
@@ -18,20 +19,79 @@ public class JavaMethodExtractor {
   private final IVConfig config;
   private final String remoteUrl;
   private final RevCommit commit;
-  private final AtomicLong totalMethodCount;
+  private final LongAdder totalMethodCount;
+  private final LongAdder screenedFileCount;
+  private final LongAdder reusedFileCount;
+  private final LongAdder reusedMethodCount;
 
   public JavaMethodExtractor(final IVConfig config, final String remoteUrl,
       final RevCommit commit) {
     this.config = config;
     this.remoteUrl = remoteUrl;
     this.commit = commit;
-    this.totalMethodCount = new AtomicLong(0);
+    this.totalMethodCount = new LongAdder();
+    this.screenedFileCount = new LongAdder();
+    this.reusedFileCount = new LongAdder();
+    this.reusedMethodCount = new LongAdder();
   }
 
   public List<JavaMethod> getJavaMethods(final String path, final String text) {
-    final ASTParser parser = createNewParser();
-    parser.setSource(text.toCharArray());
+    return getJavaMethods(path, text.toCharArray());
+  }
+
+  public List<JavaMethod> getJavaMethods(final String path, final char[] text) {
+    final ParserContext context = ParserContext.get(config.getJavaVersion());
+
+    // シグネチャの上で対象となりうるメソッドがなければ，ボディを含めた構文解析を行わない
+    if (config.isSignatureScreening()) {
+      final ASTParser signatureParser = context.getSignatureParser();
+      signatureParser.setSource(text);
+      final CompilationUnit outline = (CompilationUnit) signatureParser.createAST(null);
+      final IProblem[] problems = outline.getProblems();
+      if (null == problems || 0 < problems.length) {
+        screenedFileCount.increment();
+        return Collections.emptyList();
+      }
+      final SignatureScreener screener = new SignatureScreener(
+          new JavaFileVisitor(config, remoteUrl, commit, path));
+      if (!screener.screen(outline)) {
+        totalMethodCount.add(screener.getAllMethodCount());
+        screenedFileCount.increment();
+        return Collections.emptyList();
+      }
+    }
+
+    final ASTParser parser = context.getParser();
+    parser.setSource(text);
     final CompilationUnit ast = (CompilationUnit) parser.createAST(null);
+    return getJavaMethods(path, ast, config.isRawSource() ? text : null);
+  }
+
+  /**
+   * 引数で与えられた複数のファイルを一度のJDTの呼び出しで構文解析し，抽出したメソッドをconsumerに渡す．
+   * ソースコードを保持しないので，メソッドの生文字列は常にASTから作り，シグネチャによる選別も行わない．
+   * ファイルはJDTがUTF-8として読み込み，不正なバイト列はSourceDirectory.readと同じく置換文字に置き換えられる．
+   *
+   * @param paths
+   * @param consumer
+   */
+  public void extractJavaMethods(final List<String> paths, final Consumer<JavaMethod> consumer) {
+    final ASTParser parser = ParserContext.get(config.getJavaVersion())
+        .getParser();
+    final String[] sourceFilePaths = paths.toArray(new String[0]);
+    final String[] encodings = new String[sourceFilePaths.length];
+    Arrays.fill(encodings, StandardCharsets.UTF_8.name());
+    parser.createASTs(sourceFilePaths, encodings, new String[0], new FileASTRequestor() {
+
+      @Override
+      public void acceptAST(final String sourceFilePath, final CompilationUnit ast) {
+        getJavaMethods(sourceFilePath, ast, null).forEach(consumer);
+      }
+    }, null);
+  }
+
+  private List<JavaMethod> getJavaMethods(final String path, final CompilationUnit ast,
+      final char[] source) {
 
     // 与えられたASTに問題があるときは何もしない
     final IProblem[] problems = ast.getProblems();
@@ -40,26 +100,84 @@ public class JavaMethodExtractor {
     }
 
     final JavaFileVisitor visitor = new JavaFileVisitor(config, remoteUrl, commit, path);
+    visitor.setSource(source);
     ast.accept(visitor);
-    totalMethodCount.addAndGet(visitor.getAllMethodCount());
+    totalMethodCount.add(visitor.getAllMethodCount());
     return visitor.getJavaMethods();
   }
 
-  public long getTotalMethodCount(){
-    return totalMethodCount.get();
+  /**
+   * これまでに解析した全メソッドの数を返す．複数のスレッドから getJavaMethods が呼ばれていても正しく集計される．
+   *
+   * @return
+   */
+  public long getTotalMethodCount() {
+    return totalMethodCount.sum();
+  }
+
+  /**
+   * シグネチャの判定だけで，ボディを含めた構文解析を省略したファイルの数を返す．
+   *
+   * @return
+   */
+  public long getScreenedFileCount() {
+    return screenedFileCount.sum();
+  }
+
+  /**
+   * 構文解析せずに，解析済みの同じ内容のファイルの結果を再利用したことを記録する．
+   *
+   * @param methods 再利用したメソッドの数
+   */
+  public void addReusedFile(final int methods) {
+    reusedFileCount.increment();
+    reusedMethodCount.add(methods);
   }
 
-  private ASTParser createNewParser() {
-    ASTParser parser = ASTParser.newParser(AST.JLS16);
-    final JavaVersion javaVersion = this.config.getJavaVersion();
-    final Map<String, String> options = javaVersion.getOptions();
-    parser.setCompilerOptions(options);
+  /**
+   * 解析済みの結果を再利用したファイルの数を返す．これらのファイルのメソッドは getTotalMethodCount に含まれない．
+   *
+   * @return
+   */
+  public long getReusedFileCount() {
+    return reusedFileCount.sum();
+  }
 
-    // TODO: Bindingが必要か検討
-    parser.setResolveBindings(false);
-    parser.setBindingsRecovery(false);
-    parser.setEnvironment(null, null, null, true);
+  /**
+   * 解析済みの結果から再利用したメソッドの数を返す．
+   *
+   * @return
+   */
+  public long getReusedMethodCount() {
+    return reusedMethodCount.sum();
+  }
 
-    return parser;
+  public String getRemoteUrl() {
+    return remoteUrl;
+  }
+
+  public String getRevision() {
+    return null != commit ? commit.getName() : null;
+  }
+
+  /**
+   * 抽出結果に影響する設定を表す文字列を返す．この文字列が同じであれば，同じソースコードからは同じメソッドが抽出される．
+   *
+   * @return
+   */
+  public String getProfile() {
+    final StringBuilder profile = new StringBuilder();
+    profile.append(config.getJavaVersion()
+        .name());
+    if (config.isRawSource()) {
+      profile.append("+raw-source");
+    }
+    final String targetTypes = TargetTypes.get(config)
+        .getId();
+    if (!targetTypes.equals("default")) {
+      profile.append("+types:");
+      profile.append(targetTypes);
+    }
+    return profile.toString();
   }
 }
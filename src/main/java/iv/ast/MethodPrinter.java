@@ -0,0 +1,1639 @@
+package iv.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnnotatableType;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.ArrayCreation;
+import org.eclipse.jdt.core.dom.ArrayInitializer;
+import org.eclipse.jdt.core.dom.ArrayType;
+import org.eclipse.jdt.core.dom.AssertStatement;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BlockComment;
+import org.eclipse.jdt.core.dom.BooleanLiteral;
+import org.eclipse.jdt.core.dom.BreakStatement;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.CatchClause;
+import org.eclipse.jdt.core.dom.CharacterLiteral;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.ConditionalExpression;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.ContinueStatement;
+import org.eclipse.jdt.core.dom.CreationReference;
+import org.eclipse.jdt.core.dom.Dimension;
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EmptyStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.ExpressionMethodReference;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.InstanceofExpression;
+import org.eclipse.jdt.core.dom.IntersectionType;
+import org.eclipse.jdt.core.dom.Javadoc;
+import org.eclipse.jdt.core.dom.LabeledStatement;
+import org.eclipse.jdt.core.dom.LambdaExpression;
+import org.eclipse.jdt.core.dom.LineComment;
+import org.eclipse.jdt.core.dom.MarkerAnnotation;
+import org.eclipse.jdt.core.dom.MemberRef;
+import org.eclipse.jdt.core.dom.MemberValuePair;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.MethodRef;
+import org.eclipse.jdt.core.dom.MethodRefParameter;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.NameQualifiedType;
+import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.NullLiteral;
+import org.eclipse.jdt.core.dom.NumberLiteral;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.PatternInstanceofExpression;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.QualifiedType;
+import org.eclipse.jdt.core.dom.RecordDeclaration;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.SingleMemberAnnotation;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+import org.eclipse.jdt.core.dom.SuperFieldAccess;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+import org.eclipse.jdt.core.dom.SuperMethodReference;
+import org.eclipse.jdt.core.dom.SwitchCase;
+import org.eclipse.jdt.core.dom.SwitchExpression;
+import org.eclipse.jdt.core.dom.SwitchStatement;
+import org.eclipse.jdt.core.dom.SynchronizedStatement;
+import org.eclipse.jdt.core.dom.TagElement;
+import org.eclipse.jdt.core.dom.TextBlock;
+import org.eclipse.jdt.core.dom.TextElement;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.ThrowStatement;
+import org.eclipse.jdt.core.dom.TryStatement;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
+import org.eclipse.jdt.core.dom.TypeLiteral;
+import org.eclipse.jdt.core.dom.TypeMethodReference;
+import org.eclipse.jdt.core.dom.TypeParameter;
+import org.eclipse.jdt.core.dom.UnionType;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+import org.eclipse.jdt.core.dom.WildcardType;
+import org.eclipse.jdt.core.dom.YieldStatement;
+
+/**
+ * メソッドの正規化文字列と生文字列を，ASTを書き換えずに一度の走査で作る．
+ * 出力はJDTのtoString（NaiveASTFlattener）と文字単位で同じにする．登録済みのメソッドのハッシュ値はその出力から作られているため．
+ * JavaFileVisitorと同じくJLS16で構文解析したASTのみを扱い，メソッドの中に現れうる全ての構文に対応する．
+ *
+ * 正規化は，ノードから置き換える文字列への表と，修飾子等を取り除いたノードの集合として与える．
+ * 正規化文字列には両方を適用し，生文字列には出力するメソッド自身の修飾子等の除去のみを適用する．
+ */
+class MethodPrinter extends ASTVisitor {
+
+  private final Map<ASTNode, String> replacements;
+  private final Set<ASTNode> strippedNodes;
+  private final StringBuilder normalizedText;
+  private final StringBuilder rawText;
+  private final List<String> parameterTypes;
+
+  private MethodDeclaration root;
+  private String returnType;
+  private boolean printsNormalizedText;
+  private boolean printsRawText;
+  private int indent;
+
+  /**
+   * @param replacements 正規化文字列で置き換えるノードと，置き換えた後の文字列
+   * @param strippedNodes 修飾子等を取り除いたノード．メソッド宣言ではJavadoc，修飾子，アノテーション（単一値のものを除く）と
+   *        仮引数の修飾子，変数宣言文では修飾子，型引数を持つ型では型引数を取り除く
+   */
+  MethodPrinter(final Map<ASTNode, String> replacements, final Set<ASTNode> strippedNodes) {
+    this.replacements = replacements;
+    this.strippedNodes = strippedNodes;
+    this.normalizedText = new StringBuilder();
+    this.rawText = new StringBuilder();
+    this.parameterTypes = new ArrayList<>();
+  }
+
+  /**
+   * 引数で与えられたメソッドを出力する．出力した文字列は次にprintを呼ぶまで取り出せる．
+   *
+   * @param node
+   * @param withRawText 生文字列も作る場合はtrue
+   */
+  void print(final MethodDeclaration node, final boolean withRawText) {
+    normalizedText.setLength(0);
+    rawText.setLength(0);
+    parameterTypes.clear();
+    root = node;
+    returnType = "void";
+    printsNormalizedText = true;
+    printsRawText = withRawText;
+    indent = 0;
+    node.accept(this);
+    root = null;
+  }
+
+  String getNormalizedText() {
+    return normalizedText.toString();
+  }
+
+  String getRawText() {
+    return rawText.toString();
+  }
+
+  /**
+   * 出力したメソッドの返値の型を，正規化を適用した文字列で返す．返値の型がなければvoidを返す．
+   *
+   * @return
+   */
+  String getReturnType() {
+    return returnType;
+  }
+
+  /**
+   * 出力したメソッドの仮引数の型を，正規化を適用した文字列で返す．
+   *
+   * @return
+   */
+  List<String> getParameterTypes() {
+    return Collections.unmodifiableList(parameterTypes);
+  }
+
+  private void print(final String text) {
+    if (printsNormalizedText) {
+      normalizedText.append(text);
+    }
+    if (printsRawText) {
+      rawText.append(text);
+    }
+  }
+
+  private void print(final char c) {
+    if (printsNormalizedText) {
+      normalizedText.append(c);
+    }
+    if (printsRawText) {
+      rawText.append(c);
+    }
+  }
+
+  /**
+   * 名前やリテラルを出力する．正規化文字列では，置き換えるノードであれば置き換えた後の文字列を出力する．
+   *
+   * @param node
+   * @param text 元の文字列
+   */
+  private void printToken(final ASTNode node, final String text) {
+    if (printsNormalizedText) {
+      final String replacement = replacements.get(node);
+      normalizedText.append(null != replacement ? replacement : text);
+    }
+    if (printsRawText) {
+      rawText.append(text);
+    }
+  }
+
+  private void printIndent() {
+    for (int i = 0; i < indent; i++) {
+      print("  ");
+    }
+  }
+
+  /**
+   * ownerから取り除かれうる子ノードを出力する．ownerが取り除いたノードであれば正規化文字列には出力せず，
+   * さらに出力中のメソッド自身であれば生文字列にも出力しない．
+   *
+   * @param child
+   * @param owner
+   * @param separator 子ノードの後に続ける文字列．なければnull
+   */
+  private void printStrippable(final ASTNode child, final ASTNode owner, final String separator) {
+    final boolean stripped = null != owner && strippedNodes.contains(owner);
+    if (!stripped) {
+      child.accept(this);
+      if (null != separator) {
+        print(separator);
+      }
+      return;
+    }
+    final boolean normalized = printsNormalizedText;
+    final boolean raw = printsRawText;
+    printsNormalizedText = false;
+    printsRawText = raw && owner != root;
+    if (printsRawText) {
+      child.accept(this);
+      if (null != separator) {
+        print(separator);
+      }
+    }
+    printsNormalizedText = normalized;
+    printsRawText = raw;
+  }
+
+  /**
+   * 修飾子とアノテーションを，それぞれに空白を続けて出力する．
+   *
+   * @param modifiers
+   * @param owner 修飾子を取り除きうるノード．なければnull
+   * @param removable ownerが取り除いたノードであるときに，取り除かれる修飾子
+   */
+  private void printModifiers(final List<?> modifiers, final ASTNode owner,
+      final Predicate<Object> removable) {
+    for (final Object modifier : modifiers) {
+      if (null != owner && removable.test(modifier)) {
+        printStrippable((ASTNode) modifier, owner, " ");
+      } else {
+        ((ASTNode) modifier).accept(this);
+        print(" ");
+      }
+    }
+  }
+
+  private void printModifiers(final List<?> modifiers) {
+    printModifiers(modifiers, null, null);
+  }
+
+  private static boolean isDeclarationModifier(final Object modifier) {
+    return modifier instanceof MarkerAnnotation || modifier instanceof NormalAnnotation
+        || modifier instanceof Modifier;
+  }
+
+  private static boolean isParameterModifier(final Object modifier) {
+    return true;
+  }
+
+  private static boolean isKeywordModifier(final Object modifier) {
+    return modifier instanceof Modifier;
+  }
+
+  /**
+   * ノードのリストを，区切り文字を挟んで出力する．
+   *
+   * @param nodes
+   * @param separator
+   */
+  private void printList(final List<?> nodes, final String separator) {
+    for (final Iterator<?> it = nodes.iterator(); it.hasNext();) {
+      ((ASTNode) it.next()).accept(this);
+      if (it.hasNext()) {
+        print(separator);
+      }
+    }
+  }
+
+  private void printTypeArguments(final List<?> typeArguments) {
+    if (!typeArguments.isEmpty()) {
+      print("<");
+      printList(typeArguments, ",");
+      print(">");
+    }
+  }
+
+  private void printReferenceTypeArguments(final List<?> typeArguments) {
+    print("::");
+    printTypeArguments(typeArguments);
+  }
+
+  private void printTypeAnnotations(final AnnotatableType node) {
+    printAnnotations(node.annotations());
+  }
+
+  private void printAnnotations(final List<?> annotations) {
+    for (final Object annotation : annotations) {
+      ((ASTNode) annotation).accept(this);
+      print(" ");
+    }
+  }
+
+  private void printDimensions(final List<?> dimensions) {
+    for (final Object dimension : dimensions) {
+      ((ASTNode) dimension).accept(this);
+    }
+  }
+
+  private void printBodyDeclarations(final List<?> bodyDeclarations) {
+    for (final Object bodyDeclaration : bodyDeclarations) {
+      ((ASTNode) bodyDeclaration).accept(this);
+    }
+  }
+
+  @Override
+  public boolean visit(final AnnotationTypeDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printIndent();
+    printModifiers(node.modifiers());
+    print("@interface ");
+    node.getName()
+        .accept(this);
+    print(" {");
+    printBodyDeclarations(node.bodyDeclarations());
+    print("}\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final AnnotationTypeMemberDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printIndent();
+    printModifiers(node.modifiers());
+    node.getType()
+        .accept(this);
+    print(" ");
+    node.getName()
+        .accept(this);
+    print("()");
+    if (null != node.getDefault()) {
+      print(" default ");
+      node.getDefault()
+          .accept(this);
+    }
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final AnonymousClassDeclaration node) {
+    print("{\n");
+    indent++;
+    printBodyDeclarations(node.bodyDeclarations());
+    indent--;
+    printIndent();
+    print("}\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ArrayAccess node) {
+    node.getArray()
+        .accept(this);
+    print("[");
+    node.getIndex()
+        .accept(this);
+    print("]");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ArrayCreation node) {
+    print("new ");
+    final ArrayType type = node.getType();
+    int dimensions = type.getDimensions();
+    type.getElementType()
+        .accept(this);
+    for (final Object dimension : node.dimensions()) {
+      print("[");
+      ((ASTNode) dimension).accept(this);
+      print("]");
+      dimensions--;
+    }
+    for (int i = 0; i < dimensions; i++) {
+      print("[]");
+    }
+    if (null != node.getInitializer()) {
+      node.getInitializer()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ArrayInitializer node) {
+    print("{");
+    printList(node.expressions(), ",");
+    print("}");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ArrayType node) {
+    node.getElementType()
+        .accept(this);
+    printDimensions(node.dimensions());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final AssertStatement node) {
+    printIndent();
+    print("assert ");
+    node.getExpression()
+        .accept(this);
+    if (null != node.getMessage()) {
+      print(" : ");
+      node.getMessage()
+          .accept(this);
+    }
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Assignment node) {
+    node.getLeftHandSide()
+        .accept(this);
+    print(node.getOperator()
+        .toString());
+    node.getRightHandSide()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Block node) {
+    print("{\n");
+    indent++;
+    for (final Object statement : node.statements()) {
+      ((ASTNode) statement).accept(this);
+    }
+    indent--;
+    printIndent();
+    print("}\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final BlockComment node) {
+    printIndent();
+    print("/* */");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final BooleanLiteral node) {
+    print(node.booleanValue() ? "true" : "false");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final BreakStatement node) {
+    printIndent();
+    print("break");
+    if (null != node.getLabel()) {
+      print(" ");
+      node.getLabel()
+          .accept(this);
+    }
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final CastExpression node) {
+    print("(");
+    node.getType()
+        .accept(this);
+    print(")");
+    node.getExpression()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final CatchClause node) {
+    print("catch (");
+    node.getException()
+        .accept(this);
+    print(") ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final CharacterLiteral node) {
+    printToken(node, node.getEscapedValue());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ClassInstanceCreation node) {
+    if (null != node.getExpression()) {
+      node.getExpression()
+          .accept(this);
+      print(".");
+    }
+    print("new ");
+    printTypeArguments(node.typeArguments());
+    node.getType()
+        .accept(this);
+    print("(");
+    printList(node.arguments(), ",");
+    print(")");
+    if (null != node.getAnonymousClassDeclaration()) {
+      node.getAnonymousClassDeclaration()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ConditionalExpression node) {
+    node.getExpression()
+        .accept(this);
+    print(" ? ");
+    node.getThenExpression()
+        .accept(this);
+    print(" : ");
+    node.getElseExpression()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ConstructorInvocation node) {
+    printIndent();
+    printTypeArguments(node.typeArguments());
+    print("this(");
+    printList(node.arguments(), ",");
+    print(");\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ContinueStatement node) {
+    printIndent();
+    print("continue");
+    if (null != node.getLabel()) {
+      print(" ");
+      node.getLabel()
+          .accept(this);
+    }
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final CreationReference node) {
+    node.getType()
+        .accept(this);
+    printReferenceTypeArguments(node.typeArguments());
+    print("new");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Dimension node) {
+    final List<?> annotations = node.annotations();
+    if (!annotations.isEmpty()) {
+      print(" ");
+    }
+    printAnnotations(annotations);
+    print("[]");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final DoStatement node) {
+    printIndent();
+    print("do ");
+    node.getBody()
+        .accept(this);
+    print(" while (");
+    node.getExpression()
+        .accept(this);
+    print(");\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final EmptyStatement node) {
+    printIndent();
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final EnhancedForStatement node) {
+    printIndent();
+    print("for (");
+    node.getParameter()
+        .accept(this);
+    print(" : ");
+    node.getExpression()
+        .accept(this);
+    print(") ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final EnumConstantDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printIndent();
+    printModifiers(node.modifiers());
+    node.getName()
+        .accept(this);
+    if (!node.arguments()
+        .isEmpty()) {
+      print("(");
+      printList(node.arguments(), ",");
+      print(")");
+    }
+    if (null != node.getAnonymousClassDeclaration()) {
+      node.getAnonymousClassDeclaration()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final EnumDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printIndent();
+    printModifiers(node.modifiers());
+    print("enum ");
+    node.getName()
+        .accept(this);
+    print(" ");
+    if (!node.superInterfaceTypes()
+        .isEmpty()) {
+      print("implements ");
+      printList(node.superInterfaceTypes(), ", ");
+      print(" ");
+    }
+    print("{");
+    printList(node.enumConstants(), ", ");
+    if (!node.bodyDeclarations()
+        .isEmpty()) {
+      print("; ");
+      printBodyDeclarations(node.bodyDeclarations());
+    }
+    print("}\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ExpressionMethodReference node) {
+    node.getExpression()
+        .accept(this);
+    printReferenceTypeArguments(node.typeArguments());
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ExpressionStatement node) {
+    printIndent();
+    node.getExpression()
+        .accept(this);
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final FieldAccess node) {
+    node.getExpression()
+        .accept(this);
+    print(".");
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final FieldDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printIndent();
+    printModifiers(node.modifiers());
+    node.getType()
+        .accept(this);
+    print(" ");
+    printList(node.fragments(), ", ");
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ForStatement node) {
+    printIndent();
+    print("for (");
+    printList(node.initializers(), ", ");
+    print("; ");
+    if (null != node.getExpression()) {
+      node.getExpression()
+          .accept(this);
+    }
+    print("; ");
+    printList(node.updaters(), ", ");
+    print(") ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final IfStatement node) {
+    printIndent();
+    print("if (");
+    node.getExpression()
+        .accept(this);
+    print(") ");
+    node.getThenStatement()
+        .accept(this);
+    if (null != node.getElseStatement()) {
+      print(" else ");
+      node.getElseStatement()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final InfixExpression node) {
+    final String operator = node.getOperator()
+        .toString();
+    node.getLeftOperand()
+        .accept(this);
+    print(" ");
+    print(operator);
+    print(" ");
+    node.getRightOperand()
+        .accept(this);
+    final List<?> extendedOperands = node.extendedOperands();
+    if (!extendedOperands.isEmpty()) {
+      print(" ");
+      for (final Object operand : extendedOperands) {
+        print(operator);
+        print(" ");
+        ((ASTNode) operand).accept(this);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Initializer node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printModifiers(node.modifiers());
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final InstanceofExpression node) {
+    node.getLeftOperand()
+        .accept(this);
+    print(" instanceof ");
+    node.getRightOperand()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final PatternInstanceofExpression node) {
+    node.getLeftOperand()
+        .accept(this);
+    print(" instanceof ");
+    node.getRightOperand()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final IntersectionType node) {
+    printList(node.types(), " & ");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Javadoc node) {
+    printIndent();
+    print("/** ");
+    for (final Object tag : node.tags()) {
+      ((ASTNode) tag).accept(this);
+    }
+    print("\n */\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final LabeledStatement node) {
+    printIndent();
+    node.getLabel()
+        .accept(this);
+    print(": ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final LambdaExpression node) {
+    final boolean hasParentheses = node.hasParentheses();
+    if (hasParentheses) {
+      print("(");
+    }
+    printList(node.parameters(), ",");
+    if (hasParentheses) {
+      print(")");
+    }
+    print(" -> ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final LineComment node) {
+    print("//\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MarkerAnnotation node) {
+    print("@");
+    node.getTypeName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MemberRef node) {
+    if (null != node.getQualifier()) {
+      node.getQualifier()
+          .accept(this);
+    }
+    print("#");
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MemberValuePair node) {
+    node.getName()
+        .accept(this);
+    print("=");
+    node.getValue()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MethodDeclaration node) {
+    if (null != node.getJavadoc()) {
+      printStrippable(node.getJavadoc(), node, null);
+    }
+    printIndent();
+    printModifiers(node.modifiers(), node, MethodPrinter::isDeclarationModifier);
+    if (!node.typeParameters()
+        .isEmpty()) {
+      print("<");
+      printList(node.typeParameters(), ",");
+      print(">");
+    }
+    if (!node.isConstructor()) {
+      final Type type = node.getReturnType2();
+      if (null != type) {
+        final int start = normalizedText.length();
+        type.accept(this);
+        if (root == node) {
+          returnType = normalizedText.substring(start);
+        }
+      } else {
+        print("void");
+      }
+      print(" ");
+    }
+    node.getName()
+        .accept(this);
+    if (!node.isCompactConstructor()) {
+      print("(");
+      final Type receiverType = node.getReceiverType();
+      if (null != receiverType) {
+        receiverType.accept(this);
+        print(" ");
+        final SimpleName qualifier = node.getReceiverQualifier();
+        if (null != qualifier) {
+          qualifier.accept(this);
+          print(".");
+        }
+        print("this");
+        if (!node.parameters()
+            .isEmpty()) {
+          print(",");
+        }
+      }
+      printList(node.parameters(), ",");
+      print(")");
+    }
+    printDimensions(node.extraDimensions());
+    if (!node.thrownExceptionTypes()
+        .isEmpty()) {
+      print(" throws ");
+      printList(node.thrownExceptionTypes(), ", ");
+      print(" ");
+    }
+    if (null == node.getBody()) {
+      print(";\n");
+    } else {
+      node.getBody()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MethodInvocation node) {
+    if (null != node.getExpression()) {
+      node.getExpression()
+          .accept(this);
+      print(".");
+    }
+    printTypeArguments(node.typeArguments());
+    node.getName()
+        .accept(this);
+    print("(");
+    printList(node.arguments(), ",");
+    print(")");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MethodRef node) {
+    if (null != node.getQualifier()) {
+      node.getQualifier()
+          .accept(this);
+    }
+    print("#");
+    node.getName()
+        .accept(this);
+    print("(");
+    printList(node.parameters(), ",");
+    print(")");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final MethodRefParameter node) {
+    node.getType()
+        .accept(this);
+    if (node.isVarargs()) {
+      print("...");
+    }
+    if (null != node.getName()) {
+      print(" ");
+      node.getName()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Modifier node) {
+    print(node.getKeyword()
+        .toString());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final NameQualifiedType node) {
+    node.getQualifier()
+        .accept(this);
+    print(".");
+    printTypeAnnotations(node);
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final NormalAnnotation node) {
+    print("@");
+    node.getTypeName()
+        .accept(this);
+    print("(");
+    printList(node.values(), ",");
+    print(")");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final NullLiteral node) {
+    print("null");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final NumberLiteral node) {
+    printToken(node, node.getToken());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ParameterizedType node) {
+    node.getType()
+        .accept(this);
+    print("<");
+    if (strippedNodes.contains(node)) {
+      // 取り除いた型引数は生文字列にのみ出力する
+      final boolean normalized = printsNormalizedText;
+      printsNormalizedText = false;
+      if (printsRawText) {
+        printList(node.typeArguments(), ",");
+      }
+      printsNormalizedText = normalized;
+    } else {
+      printList(node.typeArguments(), ",");
+    }
+    print(">");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ParenthesizedExpression node) {
+    print("(");
+    node.getExpression()
+        .accept(this);
+    print(")");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final PostfixExpression node) {
+    node.getOperand()
+        .accept(this);
+    print(node.getOperator()
+        .toString());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final PrefixExpression node) {
+    print(node.getOperator()
+        .toString());
+    node.getOperand()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final PrimitiveType node) {
+    printTypeAnnotations(node);
+    print(node.getPrimitiveTypeCode()
+        .toString());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final QualifiedName node) {
+    node.getQualifier()
+        .accept(this);
+    print(".");
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final QualifiedType node) {
+    node.getQualifier()
+        .accept(this);
+    print(".");
+    printTypeAnnotations(node);
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final RecordDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printIndent();
+    printModifiers(node.modifiers());
+    print("record ");
+    node.getName()
+        .accept(this);
+    print(" ");
+    if (!node.typeParameters()
+        .isEmpty()) {
+      print("<");
+      printList(node.typeParameters(), ",");
+      print(">");
+    }
+    print(" ");
+    print("(");
+    printList(node.recordComponents(), ",");
+    print(")");
+    if (!node.superInterfaceTypes()
+        .isEmpty()) {
+      print(" implements ");
+      printList(node.superInterfaceTypes(), ", ");
+      print(" ");
+    }
+    print("{");
+    if (!node.bodyDeclarations()
+        .isEmpty()) {
+      print("\n");
+      printBodyDeclarations(node.bodyDeclarations());
+    }
+    print("}\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ReturnStatement node) {
+    printIndent();
+    print("return");
+    if (null != node.getExpression()) {
+      print(" ");
+      node.getExpression()
+          .accept(this);
+    }
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SimpleName node) {
+    printToken(node, node.getIdentifier());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SimpleType node) {
+    printTypeAnnotations(node);
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SingleMemberAnnotation node) {
+    print("@");
+    node.getTypeName()
+        .accept(this);
+    print("(");
+    node.getValue()
+        .accept(this);
+    print(")");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SingleVariableDeclaration node) {
+    printIndent();
+
+    // メソッドの仮引数の修飾子は，メソッドの修飾子と一緒に取り除かれる
+    final boolean isParameter = MethodDeclaration.PARAMETERS_PROPERTY == node.getLocationInParent();
+    printModifiers(node.modifiers(), isParameter ? node.getParent() : null,
+        MethodPrinter::isParameterModifier);
+    final int start = normalizedText.length();
+    node.getType()
+        .accept(this);
+    if (isParameter && root == node.getParent()) {
+      parameterTypes.add(normalizedText.substring(start));
+    }
+    if (node.isVarargs()) {
+      final List<?> annotations = node.varargsAnnotations();
+      if (!annotations.isEmpty()) {
+        print(" ");
+      }
+      printAnnotations(annotations);
+      print("...");
+    }
+    print(" ");
+    node.getName()
+        .accept(this);
+    printDimensions(node.extraDimensions());
+    if (null != node.getInitializer()) {
+      print("=");
+      node.getInitializer()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final StringLiteral node) {
+    printToken(node, node.getEscapedValue());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SuperConstructorInvocation node) {
+    printIndent();
+    if (null != node.getExpression()) {
+      node.getExpression()
+          .accept(this);
+      print(".");
+    }
+    printTypeArguments(node.typeArguments());
+    print("super(");
+    printList(node.arguments(), ",");
+    print(");\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SuperFieldAccess node) {
+    if (null != node.getQualifier()) {
+      node.getQualifier()
+          .accept(this);
+      print(".");
+    }
+    print("super.");
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SuperMethodInvocation node) {
+    if (null != node.getQualifier()) {
+      node.getQualifier()
+          .accept(this);
+      print(".");
+    }
+    print("super.");
+    printTypeArguments(node.typeArguments());
+    node.getName()
+        .accept(this);
+    print("(");
+    printList(node.arguments(), ",");
+    print(")");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SuperMethodReference node) {
+    if (null != node.getQualifier()) {
+      node.getQualifier()
+          .accept(this);
+      print(".");
+    }
+    print("super");
+    printReferenceTypeArguments(node.typeArguments());
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SwitchCase node) {
+    // NaiveASTFlattenerと同じく，case句の後には改行もインデントも出力しない
+    if (node.isDefault()) {
+      print("default");
+      print(node.isSwitchLabeledRule() ? " ->" : ":");
+    } else {
+      print("case ");
+      for (final Iterator<?> it = node.expressions()
+          .iterator(); it.hasNext();) {
+        ((ASTNode) it.next()).accept(this);
+        print(it.hasNext() ? ", " : node.isSwitchLabeledRule() ? " ->" : ":");
+      }
+    }
+    indent++;
+    return false;
+  }
+
+  private void printSwitch(final ASTNode expression, final List<?> statements) {
+    print("switch (");
+    expression.accept(this);
+    print(") ");
+    print("{\n");
+    indent++;
+    for (final Object statement : statements) {
+      ((ASTNode) statement).accept(this);
+      // case句で増やしたインデントを，case句以外の文の後でも減らす
+      indent--;
+    }
+    indent--;
+    printIndent();
+    print("}\n");
+  }
+
+  @Override
+  public boolean visit(final SwitchExpression node) {
+    printSwitch(node.getExpression(), node.statements());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SwitchStatement node) {
+    printSwitch(node.getExpression(), node.statements());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final SynchronizedStatement node) {
+    print("synchronized (");
+    node.getExpression()
+        .accept(this);
+    print(") ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TagElement node) {
+    if (node.isNested()) {
+      print("{");
+    } else {
+      print("\n * ");
+    }
+    boolean previousRequiresWhiteSpace = false;
+    if (null != node.getTagName()) {
+      print(node.getTagName());
+      previousRequiresWhiteSpace = true;
+    }
+    boolean previousRequiresNewLine = false;
+    for (final Object fragment : node.fragments()) {
+      boolean currentIncludesWhiteSpace = false;
+      if (fragment instanceof TextElement) {
+        final String text = ((TextElement) fragment).getText();
+        if (0 < text.length() && Character.isWhitespace(text.charAt(0))) {
+          currentIncludesWhiteSpace = true;
+        }
+      }
+      if (previousRequiresNewLine && currentIncludesWhiteSpace) {
+        print("\n * ");
+      }
+      previousRequiresNewLine = currentIncludesWhiteSpace;
+      if (previousRequiresWhiteSpace && !currentIncludesWhiteSpace) {
+        print(" ");
+      }
+      ((ASTNode) fragment).accept(this);
+      previousRequiresWhiteSpace = !currentIncludesWhiteSpace && !(fragment instanceof TagElement);
+    }
+    if (node.isNested()) {
+      print("}");
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TextBlock node) {
+    print(node.getEscapedValue());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TextElement node) {
+    print(node.getText());
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ThisExpression node) {
+    if (null != node.getQualifier()) {
+      node.getQualifier()
+          .accept(this);
+      print(".");
+    }
+    print("this");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final ThrowStatement node) {
+    printIndent();
+    print("throw ");
+    node.getExpression()
+        .accept(this);
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TryStatement node) {
+    printIndent();
+    print("try ");
+    final List<?> resources = node.resources();
+    if (!resources.isEmpty()) {
+      print("(");
+      printList(resources, ";");
+      print(")");
+    }
+    node.getBody()
+        .accept(this);
+    print(" ");
+    for (final Object catchClause : node.catchClauses()) {
+      ((ASTNode) catchClause).accept(this);
+    }
+    if (null != node.getFinally()) {
+      print(" finally ");
+      node.getFinally()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TypeDeclaration node) {
+    if (null != node.getJavadoc()) {
+      node.getJavadoc()
+          .accept(this);
+    }
+    printModifiers(node.modifiers());
+    print(node.isInterface() ? "interface " : "class ");
+    node.getName()
+        .accept(this);
+    if (!node.typeParameters()
+        .isEmpty()) {
+      print("<");
+      printList(node.typeParameters(), ",");
+      print(">");
+    }
+    print(" ");
+    if (null != node.getSuperclassType()) {
+      print("extends ");
+      node.getSuperclassType()
+          .accept(this);
+      print(" ");
+    }
+    if (!node.superInterfaceTypes()
+        .isEmpty()) {
+      print(node.isInterface() ? "extends " : "implements ");
+      printList(node.superInterfaceTypes(), ", ");
+      print(" ");
+    }
+    // permits節はJava 16ではプレビュー機能なので，プレビューが有効な場合のみ存在する
+    final AST ast = node.getAST();
+    if (AST.JLS16 == ast.apiLevel() && ast.isPreviewEnabled() && !node.permittedTypes()
+        .isEmpty()) {
+      print("permits ");
+      printList(node.permittedTypes(), ", ");
+      print(" ");
+    }
+    print("{\n");
+    indent++;
+    printBodyDeclarations(node.bodyDeclarations());
+    indent--;
+    printIndent();
+    print("}\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TypeDeclarationStatement node) {
+    node.getDeclaration()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TypeLiteral node) {
+    node.getType()
+        .accept(this);
+    print(".class");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TypeMethodReference node) {
+    node.getType()
+        .accept(this);
+    printReferenceTypeArguments(node.typeArguments());
+    node.getName()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final TypeParameter node) {
+    printModifiers(node.modifiers());
+    node.getName()
+        .accept(this);
+    if (!node.typeBounds()
+        .isEmpty()) {
+      print(" extends ");
+      printList(node.typeBounds(), " & ");
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final UnionType node) {
+    printList(node.types(), "|");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final VariableDeclarationExpression node) {
+    printModifiers(node.modifiers());
+    node.getType()
+        .accept(this);
+    print(" ");
+    printList(node.fragments(), ", ");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final VariableDeclarationFragment node) {
+    node.getName()
+        .accept(this);
+    printDimensions(node.extraDimensions());
+    if (null != node.getInitializer()) {
+      print("=");
+      node.getInitializer()
+          .accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final VariableDeclarationStatement node) {
+    printIndent();
+    printModifiers(node.modifiers(), node, MethodPrinter::isKeywordModifier);
+    node.getType()
+        .accept(this);
+    print(" ");
+    printList(node.fragments(), ", ");
+    print(";\n");
+    return false;
+  }
+
+  @Override
+  public boolean visit(final WhileStatement node) {
+    printIndent();
+    print("while (");
+    node.getExpression()
+        .accept(this);
+    print(") ");
+    node.getBody()
+        .accept(this);
+    return false;
+  }
+
+  @Override
+  public boolean visit(final WildcardType node) {
+    printTypeAnnotations(node);
+    print("?");
+    final Type bound = node.getBound();
+    if (null != bound) {
+      print(node.isUpperBound() ? " extends " : " super ");
+      bound.accept(this);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final YieldStatement node) {
+    if (node.isImplicit() && null == node.getExpression()) {
+      return false;
+    }
+    printIndent();
+    print("yield");
+    if (null != node.getExpression()) {
+      print(" ");
+      node.getExpression()
+          .accept(this);
+    }
+    print(";\n");
+    return false;
+  }
+}
@@ -0,0 +1,66 @@
+package iv.ast;
+
+import java.util.EnumMap;
+import java.util.Map;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import iv.JavaVersion;
+
+/**
+ * スレッドごと，Javaのバージョンごとに保持される構文解析器．
+ * ASTParserは構文木を作成するたびに設定が初期化されるが，インスタンス自体は再利用できる．
+ * コンパイラオプションはバージョンごとに作成済みのものを使うので，構文解析のたびに作り直さない．
+ */
+public class ParserContext {
+
+  private static final ThreadLocal<Map<JavaVersion, ParserContext>> CONTEXTS =
+      ThreadLocal.withInitial(() -> new EnumMap<>(JavaVersion.class));
+
+  private final Map<String, String> options;
+  private final ASTParser parser;
+
+  private ParserContext(final JavaVersion javaVersion) {
+    this.options = javaVersion.getOptions();
+    this.parser = ASTParser.newParser(AST.JLS16);
+  }
+
+  /**
+   * 呼び出したスレッドの，引数で与えられたバージョン用の構文解析器を返す．
+   *
+   * @param javaVersion
+   * @return
+   */
+  public static ParserContext get(final JavaVersion javaVersion) {
+    return CONTEXTS.get()
+        .computeIfAbsent(javaVersion, ParserContext::new);
+  }
+
+  /**
+   * 設定済みのASTParserを返す．返したASTParserは，このスレッドで次にgetParserを呼ぶまでに使い終える必要がある．
+   *
+   * @return
+   */
+  public ASTParser getParser() {
+    parser.setCompilerOptions(options);
+
+    // TODO: Bindingが必要か検討
+    parser.setResolveBindings(false);
+    parser.setBindingsRecovery(false);
+    parser.setEnvironment(null, null, null, true);
+    parser.setIgnoreMethodBodies(false);
+
+    return parser;
+  }
+
+  /**
+   * メソッドボディを省略して構文解析するように設定したASTParserを返す．
+   * 返したASTParserは，このスレッドで次にgetParserを呼ぶまでに使い終える必要がある．
+   *
+   * @return
+   */
+  public ASTParser getSignatureParser() {
+    final ASTParser parser = getParser();
+    parser.setIgnoreMethodBodies(true);
+    return parser;
+  }
+}
@@ -0,0 +1,72 @@
+package iv.ast;
+
+import java.util.List;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+/**
+ * メソッドボディを省略して構文解析したASTから，シグネチャの上で対象となりうるメソッドがあるかを調べる．
+ * 対象となりうるメソッドが一つもないファイルは，ボディを含めた構文解析をする必要がない．
+ * シグネチャの判定には JavaFileVisitor と同じ条件を用いる．
+ */
+class SignatureScreener extends ASTVisitor {
+
+  private final JavaFileVisitor typeChecker;
+  private int methodCount;
+  private boolean hasTarget;
+
+  SignatureScreener(final JavaFileVisitor typeChecker) {
+    this.typeChecker = typeChecker;
+    this.methodCount = 0;
+    this.hasTarget = false;
+  }
+
+  /**
+   * 引数で与えられたASTに，シグネチャの上で対象となりうるメソッドがあればtrueを返す．
+   *
+   * @param ast
+   * @return
+   */
+  boolean screen(final CompilationUnit ast) {
+    ast.accept(this);
+    return hasTarget;
+  }
+
+  /**
+   * JavaFileVisitor が数えるのと同じ基準で数えたメソッドの数を返す．
+   *
+   * @return
+   */
+  int getAllMethodCount() {
+    return methodCount;
+  }
+
+  @Override
+  public boolean visit(final MethodDeclaration node) {
+
+    // JavaFileVisitorと同じく，コンストラクタとthrows節を持つメソッドは数えない
+    if (node.isConstructor()) {
+      return false;
+    }
+    final List<?> thrownExceptionTypes = node.thrownExceptionTypes();
+    if (null != thrownExceptionTypes && !thrownExceptionTypes.isEmpty()) {
+      return false;
+    }
+    methodCount++;
+
+    // ボディを省略しても，ボディを持つメソッドには空のブロックが設定される
+    if (null != node.getBody() && typeChecker.hasTargetTypes(node)) {
+      hasTarget = true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean visit(final Initializer node) {
+    // 初期化子の中のローカルクラスは省略されて見えないので，対象となりうるものとして扱う
+    hasTarget = true;
+    return false;
+  }
+}
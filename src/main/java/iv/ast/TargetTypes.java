@@ -0,0 +1,400 @@
+package iv.ast;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import iv.IVConfig;
+
+/**
+ * 対象とする型の単純名の集合．返値や引数の型がこの集合に含まれるメソッドのみを対象とする．
+ * 既定ではjava.langとjava.utilのクラスを対象とする．
+ * ファイルから読み込んだ集合で置き換えることや，JDKの他のパッケージの公開クラスを加えることができる．
+ * 一度作成した集合は変更されないので，複数のスレッドから参照しても良い．
+ */
+public class TargetTypes {
+
+  private static final String[] JAVA_LANG_CLASSES = new String[] {
+      "AbstractMethodError",//
+      "Appendable",//
+      "ArithmeticException",//
+      "ArrayIndexOutOfBoundsException",//
+      "ArrayStoreException",//
+      "AssertionError",//
+      "AutoCloseable",//
+      "Boolean",//
+      "BootstrapMethodError",//
+      "Byte",//
+      "Character",//
+      "CharSequence",//
+      "Class",//
+      "ClassCastException",//
+      "ClassCircularityError",//
+      "ClassFormatError",//
+      "ClassLoader",//
+      "ClassNotFoundException",//
+      "ClassValue",//
+      "Cloneable",//
+      "CloneNotSupportedException",//
+      "Comparable",//
+      "Compiler",//
+      "Deprecated",//
+      "Double",//
+      "Enum",//
+      "EnumConstantNotPresentException",//
+      "Error",//
+      "Exception",//
+      "ExceptionInInitializerError",//
+      "Float",//
+      "FunctionalInterface",//
+      "IllegalAccessError",//
+      "IllegalAccessException",//
+      "IllegalArgumentException",//
+      "IllegalCallerException",//
+      "IllegalMonitorStateException",//
+      "IllegalStateException",//
+      "IllegalThreadStateException",//
+      "IncompatibleClassChangeError",//
+      "IndexOutOfBoundsException",//
+      "InheritableThreadLocal",//
+      "InstantiationError",//
+      "InstantiationException",//
+      "Integer",//
+      "InternalError",//
+      "InterruptedException",//
+      "Iterable",//
+      "LayerInstantiationException",//
+      "LinkageError",//
+      "Long",//
+      "Math",//
+      "Module",//
+      "ModuleLayer",//
+      "NegativeArraySizeException",//
+      "NoClassDefFoundError",//
+      "NoSuchFieldError",//
+      "NoSuchFieldException",//
+      "NoSuchMethodError",//
+      "NoSuchMethodException",//
+      "NullPointerException",//
+      "Number",//
+      "NumberFormatException",//
+      "Object",//
+      "OutOfMemoryError",//
+      "Override",//
+      "Package",//
+      "Process",//
+      "ProcessBuilder",//
+      "ProcessHandle",//
+      "Readable",//
+      "Record",//
+      "ReflectiveOperationException",//
+      "Runnable",//
+      "Runtime",//
+      "RuntimeException",//
+      "RuntimePermission",//
+      "SafeVarargs",//
+      "SecurityException",//
+      "SecurityManager",//
+      "Short",//
+      "StackOverflowError",//
+      "StackTraceElement",//
+      "StackWalker",//
+      "StrictMath",//
+      "String",//
+      "StringBuffer",//
+      "StringBuilder",//
+      "SuppressWarnings",//
+      "System",//
+      "Thread",//
+      "ThreadDeath",//
+      "ThreadGroup",//
+      "ThreadLocal",//
+      "Throwable",//
+      "TypeNotPresentException",//
+      "UnknownError",//
+      "UnsatisfiedLinkError",//
+      "UnsupportedClassVersionError",//
+      "UnsupportedOperationException",//
+      "VerifyError",//
+      "VirtualMachineError",//
+      "Void"//
+  };
+
+  private static final String[] JAVA_UTIL_CLASSES = new String[] {
+      "AbstractCollection",//
+      "AbstractList",//
+      "AbstractMap",//
+      "AbstractQueue",//
+      "AbstractSequentialList",//
+      "AbstractSet",//
+      "ArrayDeque",//
+      "ArrayList",//
+      "Arrays",//
+      "Base64",//
+      "BitSet",//
+      "Calendar",//
+      "Collection",//
+      "Collections",//
+      "Comparator",//
+      "ConcurrentModificationException",//
+      "Currency",//
+      "Date",//
+      "Deque",//
+      "Dictionary",//
+      "DoubleSummaryStatistics",//
+      "DuplicateFormatFlagsException",//
+      "EmptyStackException",//
+      "Enumeration",//
+      "EnumMap",//
+      "EnumSet",//
+      "EventListener",//
+      "EventListenerProxy",//
+      "EventObject",//
+      "FormatFlagsConversionMismatchException",//
+      "Formattable",//
+      "Formatter",//
+      "FormatterClosedException",//
+      "GregorianCalendar",//
+      "HashMap",//
+      "HashSet",//
+      "Hashtable",//
+      "HexFormat",//
+      "IdentityHashMap",//
+      "IllegalFormatCodePointException",//
+      "IllegalFormatConversionException",//
+      "IllegalFormatException",//
+      "IllegalFormatFlagsException",//
+      "IllegalFormatPrecisionException",//
+      "IllegalFormatWidthException",//
+      "IllformedLocaleException",//
+      "InputMismatchException",//
+      "IntSummaryStatistics",//
+      "InvalidPropertiesFormatException",//
+      "Iterator",//
+      "LinkedHashMap",//
+      "LinkedHashSet",//
+      "LinkedList",//
+      "List",//
+      "ListIterator",//
+      "ListResourceBundle",//
+      "Locale",//
+      "LongSummaryStatistics",//
+      "Map",//
+      "MissingFormatArgumentException",//
+      "MissingFormatWidthException",//
+      "MissingResourceException",//
+      "NavigableMap",//
+      "NavigableSet",//
+      "NoSuchElementException",//
+      "Objects",//
+      "Observable",//
+      "Observer",//
+      "Optional",//
+      "OptionalDouble",//
+      "OptionalInt",//
+      "OptionalLong",//
+      "PrimitiveIterator",//
+      "PriorityQueue",//
+      "Properties",//
+      "PropertyPermission",//
+      "PropertyResourceBundle",//
+      "Queue",//
+      "Random",//
+      "RandomAccess",//
+      "ResourceBundle",//
+      "Scanner",//
+      "ServiceConfigurationError",//
+      "ServiceLoader",//
+      "Set",//
+      "SimpleTimeZone",//
+      "SortedMap",//
+      "SortedSet",//
+      "Spliterator",//
+      "Spliterators",//
+      "SplittableRandom",//
+      "Stack",//
+      "StringJoiner",//
+      "StringTokenizer",//
+      "Timer",//
+      "TimerTask",//
+      "TimeZone",//
+      "TooManyListenersException",//
+      "TreeMap",//
+      "TreeSet",//
+      "UnknownFormatConversionException",//
+      "UnknownFormatFlagsException",//
+      "UUID",//
+      "Vector",//
+      "WeakHashMap",//
+  };
+
+  private static final String DEFAULT_ID = "default";
+
+  private static final Map<String, TargetTypes> CACHE = new ConcurrentHashMap<>();
+
+  private final String id;
+  private final Set<String> names;
+  private final List<String> packages;
+
+  private TargetTypes(final String id, final Set<String> names, final Set<String> packages) {
+    this.id = id;
+    this.names = Collections.unmodifiableSet(new HashSet<>(names));
+    this.packages = Collections.unmodifiableList(new ArrayList<>(packages));
+  }
+
+  /**
+   * 引数で与えられた設定に従った型の集合を返す．同じ設定に対しては一度だけ作成する．
+   *
+   * @param config
+   * @return
+   */
+  public static TargetTypes get(final IVConfig config) {
+    final Path typesPath = config.getTypesPath();
+    final List<String> typePackages = null != config.getTypePackages()
+        ? config.getTypePackages()
+        : Collections.emptyList();
+    final String key = (null != typesPath ? typesPath.toString() : "") + "|" + String.join(",",
+        typePackages);
+    return CACHE.computeIfAbsent(key, k -> create(typesPath, typePackages));
+  }
+
+  private static TargetTypes create(final Path typesPath, final List<String> typePackages) {
+    final Set<String> names = new HashSet<>();
+    final Set<String> packages = new LinkedHashSet<>();
+
+    if (null == typesPath) {
+      names.addAll(Arrays.asList(JAVA_LANG_CLASSES));
+      names.addAll(Arrays.asList(JAVA_UTIL_CLASSES));
+      packages.add("java.lang");
+      packages.add("java.util");
+    } else {
+      load(typesPath, names, packages);
+    }
+
+    for (final String typePackage : typePackages) {
+      names.addAll(getPublicClasses(typePackage));
+      packages.add(typePackage);
+    }
+
+    final String id = null == typesPath && typePackages.isEmpty() ? DEFAULT_ID
+        : Integer.toHexString(names.stream()
+            .sorted()
+            .collect(Collectors.joining(","))
+            .hashCode());
+    return new TargetTypes(id, names, packages);
+  }
+
+  /**
+   * ファイルから型の集合を読み込む．ファイルの各行には，完全限定名（java.math.BigDecimal）か，
+   * パッケージ名にアスタリスクを付けたもの（java.math.*）を記述する．空行および#で始まる行は無視する．
+   */
+  private static void load(final Path typesPath, final Set<String> names,
+      final Set<String> packages) {
+    try {
+      for (final String line : Files.readAllLines(typesPath)) {
+        final String trimmedLine = line.trim();
+        if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+          continue;
+        }
+        final int lastDot = trimmedLine.lastIndexOf('.');
+        if (lastDot < 0) {
+          System.err.println("ignored a type without package: " + trimmedLine);
+          continue;
+        }
+        final String typePackage = trimmedLine.substring(0, lastDot);
+        final String name = trimmedLine.substring(lastDot + 1);
+        if (name.equals("*")) {
+          names.addAll(getPublicClasses(typePackage));
+        } else {
+          names.add(name);
+        }
+        packages.add(typePackage);
+      }
+    } catch (final IOException e) {
+      System.err.println("cannot read types: " + typesPath);
+      System.exit(0);
+    }
+  }
+
+  /**
+   * 実行中のJDKから，引数で与えられたパッケージの公開トップレベルクラスの単純名を取得する．
+   */
+  private static Set<String> getPublicClasses(final String typePackage) {
+    final Set<String> names = new HashSet<>();
+    final FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+    final Path packageDir = jrt.getPath("/packages", typePackage);
+    if (!Files.isDirectory(packageDir)) {
+      System.err.println("no such package in JDK: " + typePackage);
+      return names;
+    }
+
+    // /packages/<パッケージ名>/<モジュール名> はモジュールのルートを指している
+    try (final Stream<Path> modules = Files.list(packageDir)) {
+      for (final Path module : modules.collect(Collectors.toList())) {
+        final Path classDir = module.resolve(typePackage.replace('.', '/'));
+        try (final Stream<Path> classFiles = Files.list(classDir)) {
+          classFiles.map(f -> f.getFileName()
+              .toString())
+              .filter(f -> f.endsWith(".class") && !f.contains("$") && !f.contains("-"))
+              .map(f -> f.substring(0, f.length() - ".class".length()))
+              .filter(n -> isPublic(typePackage + "." + n))
+              .forEach(names::add);
+        }
+      }
+    } catch (final IOException e) {
+      e.printStackTrace();
+    }
+    return names;
+  }
+
+  private static boolean isPublic(final String className) {
+    try {
+      final Class<?> type = Class.forName(className, false, ClassLoader.getPlatformClassLoader());
+      return Modifier.isPublic(type.getModifiers());
+    } catch (final ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * 引数で与えられた単純名の型が対象であればtrueを返す．
+   *
+   * @param name
+   * @return
+   */
+  public boolean contains(final String name) {
+    return names.contains(name);
+  }
+
+  /**
+   * 対象の型を含むパッケージを返す．生成するクラスでは，これらのパッケージをインポートする．
+   *
+   * @return
+   */
+  public List<String> getPackages() {
+    return packages;
+  }
+
+  /**
+   * この集合を識別する文字列を返す．既定の集合であれば"default"を返す．
+   *
+   * @return
+   */
+  public String getId() {
+    return id;
+  }
+}
@@ -0,0 +1,73 @@
+package iv.data;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * 正規化文字列から，構文的に同じメソッドを判定するためのハッシュ値を計算するアルゴリズム．
+ */
+public enum Fingerprint {
+
+  /**
+   * 既存のデータベースとの互換性のためのMD5．
+   * 空白，タブ，実行環境の改行文字を除いた文字列を実行環境の既定の文字コードで符号化してから計算するので，
+   * 実行環境によって値が変わる．
+   */
+  MD5 {
+    @Override
+    byte[] compute(final byte[] text) {
+      return JavaMethod.digest(text);
+    }
+  },
+
+  /**
+   * murmur3の128ビットハッシュ．UTF-8のバイト列から空白文字を読み飛ばしながら直接入力するので，
+   * 中間の文字列を作らず，実行環境の文字コードや改行文字に依存しない．
+   */
+  MURMUR3_128 {
+    @Override
+    byte[] compute(final byte[] text) {
+      final Hasher hasher = Hashing.murmur3_128()
+          .newHasher();
+
+      // 空白文字の間の連続したバイト列をまとめて入力する
+      int start = 0;
+      for (int index = 0; index < text.length; index++) {
+        final byte b = text[index];
+        if (' ' == b || '\t' == b || '\n' == b || '\r' == b) {
+          hasher.putBytes(text, start, index - start);
+          start = index + 1;
+        }
+      }
+      hasher.putBytes(text, start, text.length - start);
+      return hasher.hash()
+          .asBytes();
+    }
+  };
+
+  /**
+   * UTF-8で符号化された正規化文字列のハッシュ値を計算する．
+   *
+   * @param text
+   * @return
+   */
+  abstract byte[] compute(final byte[] text);
+
+  /**
+   * オプションやデータベースに記録された名前からアルゴリズムを返す．該当するものがなければnullを返す．
+   *
+   * @param name
+   * @return
+   */
+  public static Fingerprint get(final String name) {
+    switch (name.toLowerCase()) {
+      case "md5":
+        return MD5;
+      case "murmur3":
+      case "murmur3_128":
+        return MURMUR3_128;
+      default:
+        return null;
+    }
+  }
+}
@@ -1,20 +1,36 @@
 package iv.data;
 
 import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.Stream;
 import org.eclipse.jgit.revwalk.RevCommit;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
+/**
+ * 抽出されたメソッド．登録や分類の際には大量のインスタンスがメモリ上に置かれるので，コンパクトに保持する．
+ * パス，リポジトリ，コミット，型名，メソッド名は同じ文字列を共有し，生文字列と正規化文字列はUTF-8のバイト列として保持する．
+ */
 public class JavaMethod {
 
+  // 多くのメソッドで重複する文字列を共有するためのプール
+  private static final Interner<String> NAMES = Interners.newWeakInterner();
+  private static final String[] NO_PARAMETERS = new String[0];
+
+  // 既定の文字コードがUTF-8で改行文字が\nか\r\nであれば，MD5を正規化文字列のバイト列から直接計算できる
+  private static final boolean DIGESTS_BYTES = StandardCharsets.UTF_8.equals(Charset.defaultCharset())
+      && ("\n".equals(System.lineSeparator()) || "\r\n".equals(System.lineSeparator()));
+
   public final String returnType;
   public final String name;
-  public final String rawText;
-  public final String normalizedText;
   public final int size;
   public final int branches;
   public final String path;
@@ -23,36 +39,140 @@ public class JavaMethod {
   public final String repository;
   public final String commit;
   public final int id;
-  private final List<String> parameters;
+  private final byte[] normalizedText;
+  private String[] parameters;
+  private CharSequence rawSource;
+  private byte[] rawText;
+  private Fingerprint hashAlgorithm;
+  private byte[] hash;
 
-  public JavaMethod(final String returnType, final String name, final String rawText,
+  public JavaMethod(final String returnType, final String name, final CharSequence rawText,
       final String normalizedText, final int size, final int branches, final String path,
       final int startLine, final int endLine, final String repository, final RevCommit commit) {
     this(returnType, name, rawText, normalizedText, size, branches, path, startLine, endLine,
         repository, null != commit ? commit.getName() : null, -1);
   }
 
-  public JavaMethod(final String returnType, final String name, final String rawText,
+  public JavaMethod(final String returnType, final String name, final CharSequence rawText,
       final String normalizedText, final int size, final int branches, final String path,
       final int startLine, final int endLine, final String repository, final String commit,
       final int id) {
-    this.returnType = returnType;
-    this.parameters = new ArrayList<>();
-    this.name = name;
+    this(returnType, name, rawText instanceof String ? encode((String) rawText) : null,
+        encode(normalizedText), size, branches, path, startLine, endLine, repository, commit,
+        id);
+
+    // ソースコードの一部分はバイト列が必要になるまでそのまま保持する
+    if (null != rawText && !(rawText instanceof String)) {
+      this.rawSource = rawText;
+    }
+  }
+
+  /**
+   * データベースから読み込んだUTF-8のバイト列から作る．バイト列は文字列が必要になるまで復号しない．
+   */
+  public JavaMethod(final String returnType, final String name, final byte[] rawText,
+      final byte[] normalizedText, final int size, final int branches, final String path,
+      final int startLine, final int endLine, final String repository, final String commit,
+      final int id) {
+    this.returnType = intern(returnType);
+    this.parameters = NO_PARAMETERS;
+    this.name = intern(name);
     this.rawText = rawText;
     this.normalizedText = normalizedText;
     this.size = size;
     this.branches = branches;
-    this.path = path;
+    this.path = intern(path);
     this.startLine = startLine;
     this.endLine = endLine;
-    this.repository = repository;
-    this.commit = commit;
+    this.repository = intern(repository);
+    this.commit = intern(commit);
     this.id = id;
   }
 
+  /**
+   * メソッド全体の文字列を返す．呼ばれるたびにバイト列から復号する．
+   *
+   * @return
+   */
+  public String getRawText() {
+    final byte[] bytes = getRawTextBytes();
+    return null != bytes ? decode(bytes) : null;
+  }
+
+  /**
+   * メソッド全体の文字列をUTF-8で返す．ソースコードの一部分として保持している場合は，ここで初めて符号化する．
+   * 返したバイト列を変更してはならない．
+   *
+   * @return
+   */
+  public synchronized byte[] getRawTextBytes() {
+    if (null != rawSource) {
+      rawText = encode(rawSource.toString());
+      rawSource = null;
+    }
+    return rawText;
+  }
+
+  /**
+   * 正規化後の文字列を返す．呼ばれるたびにバイト列から復号する．
+   *
+   * @return
+   */
+  public String getNormalizedText() {
+    return null != normalizedText ? decode(normalizedText) : null;
+  }
+
+  /**
+   * 正規化後の文字列をUTF-8で返す．返したバイト列を変更してはならない．
+   *
+   * @return
+   */
+  public byte[] getNormalizedTextBytes() {
+    return normalizedText;
+  }
+
+  /**
+   * 引数の型を追加する．引数の配列は共有されることがあるので，変更せずに置き換える．
+   *
+   * @param parameter
+   */
   public void addParameter(final String parameter) {
-    parameters.add(parameter);
+    final String[] newParameters = Arrays.copyOf(parameters, parameters.length + 1);
+    newParameters[parameters.length] = intern(parameter);
+    parameters = newParameters;
+  }
+
+  public List<String> getParameters() {
+    return Collections.unmodifiableList(Arrays.asList(parameters));
+  }
+
+  /**
+   * パス，リポジトリ，コミットのみを置き換えたこのメソッドのコピーを返す．
+   * 同一内容のファイルから抽出したメソッドを再利用するために用いる．
+   * 文字列と引数の配列はコピーせずに共有する．
+   *
+   * @param path
+   * @param repository
+   * @param commit
+   * @return
+   */
+  public JavaMethod relocate(final String path, final String repository, final String commit) {
+    final JavaMethod method = new JavaMethod(returnType, name, getRawTextBytes(),
+        normalizedText, size, branches, path, startLine, endLine, repository, commit, id);
+    method.parameters = parameters;
+    return method;
+  }
+
+  private static String intern(final String text) {
+    return null != text ? NAMES.intern(text) : null;
+  }
+
+  private static byte[] encode(final String text) {
+    return null != text ? text.getBytes(StandardCharsets.UTF_8) : null;
+  }
+
+  private static String decode(final byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
   }
 
   public String getSignatureText() {
@@ -76,8 +196,23 @@ public class JavaMethod {
   }
 
   public String getClassText(final String className) {
+    return getClassText(className, Collections.singletonList("java.util"));
+  }
+
+  /**
+   * 引数で与えられたパッケージをインポートしたクラスとして，このメソッドの文字列を返す．
+   *
+   * @param className
+   * @param packages
+   * @return
+   */
+  public String getClassText(final String className, final List<String> packages) {
     final List<String> lines = new ArrayList<>();
-    lines.add("import java.util.*;");
+    for (final String importedPackage : packages) {
+      if (!importedPackage.equals("java.lang")) {
+        lines.add("import " + importedPackage + ".*;");
+      }
+    }
     lines.add("public class " + className + " {");
     lines.add("");
 
@@ -92,7 +227,8 @@ public class JavaMethod {
     if (null != repository && null != commit) {
       lines.add("    // permalink: " + getPermalink());
     }
-    for (final String line : rawText.split(System.lineSeparator())) {
+    // ソースコードから切り出した文字列は，元のファイルの改行コードを含む
+    for (final String line : getRawText().split("\\R")) {
       lines.add("    " + line.replace(name + "(", "__target__("));
     }
 
@@ -123,32 +259,183 @@ public class JavaMethod {
   }
 
   public byte[] getMD5() {
-    final String textForHash = normalizedText.replace(" ", "")
-        .replace("\t", "")
-        .replace(System.lineSeparator(), "");
+    return getHash(Fingerprint.MD5);
+  }
+
+  /**
+   * 引数で与えられたアルゴリズムによる正規化文字列のハッシュ値を返す．
+   * 最後に計算したハッシュ値を保持しておき，同じアルゴリズムでは計算し直さない．
+   *
+   * @param fingerprint
+   * @return
+   */
+  public synchronized byte[] getHash(final Fingerprint fingerprint) {
+    if (fingerprint != hashAlgorithm) {
+      hash = fingerprint.compute(normalizedText);
+      hashAlgorithm = fingerprint;
+    }
+    return hash;
+  }
+
+  /**
+   * UTF-8で符号化された正規化文字列について，digest(String)と同じMD5を返す．
+   * 実行環境が許せば，復号も中間の文字列も作らずに一度の走査で計算する．
+   *
+   * @param text
+   * @return
+   */
+  static byte[] digest(final byte[] text) {
+    if (!DIGESTS_BYTES) {
+      return digest(new String(text, StandardCharsets.UTF_8));
+    }
+    return digest(text, System.lineSeparator());
+  }
+
+  /**
+   * UTF-8で符号化された正規化文字列から，空白，タブ，改行を除きながら直接MD5を計算する．
+   * UTF-8ではこれらのバイトは複数バイトの文字の一部に現れないので，復号して文字単位で除くのと同じ結果になる．
+   * 改行文字が\r\nの場合は，digest(String)と同じく，空白とタブを除いた後に隣り合う\rと\nのみを除く．
+   *
+   * @param text
+   * @param lineSeparator \nもしくは\r\n
+   * @return
+   */
+  static byte[] digest(final byte[] text, final String lineSeparator) {
+    final boolean isCRLF = "\r\n".equals(lineSeparator);
+    final MessageDigest md5 = getMD5Digest();
+
+    // 入力していない連続したバイト列の開始位置と，改行として除くかがまだ決まっていない\rがあるか
+    int start = 0;
+    boolean hasPendingCR = false;
+    for (int index = 0; index < text.length; index++) {
+      final byte b = text[index];
+      if (' ' == b || '\t' == b || (!isCRLF && '\n' == b)) {
+        md5.update(text, start, index - start);
+        start = index + 1;
+        continue;
+      }
+      if (!isCRLF) {
+        continue;
+      }
+      if (hasPendingCR) {
+        hasPendingCR = false;
+        start = index;
+        if ('\n' == b) {
+          start = index + 1;
+          continue;
+        }
+        md5.update((byte) '\r');
+      }
+      if ('\r' == b) {
+        md5.update(text, start, index - start);
+        start = index + 1;
+        hasPendingCR = true;
+      }
+    }
+    if (hasPendingCR) {
+      md5.update((byte) '\r');
+    } else {
+      md5.update(text, start, text.length - start);
+    }
+    return md5.digest();
+  }
+
+  /**
+   * 空白，タブ，改行を除いた正規化文字列のMD5を返す．
+   * 空白とタブを除いた後に改行を除くのと同じ結果になるように，一度の走査で除く．
+   *
+   * @param text
+   * @return
+   */
+  static byte[] digest(final String text) {
+    return digest(text, System.lineSeparator());
+  }
+
+  static byte[] digest(final String text, final String lineSeparator) {
+    final StringBuilder textForHash = new StringBuilder(text.length());
+
+    // 改行を除いた直後の位置．これより前の文字と後の文字は改行として繋げない
+    int floor = 0;
+    for (int index = 0; index < text.length(); index++) {
+      final char c = text.charAt(index);
+      if (' ' == c || '\t' == c) {
+        continue;
+      }
+      textForHash.append(c);
+      final int start = textForHash.length() - lineSeparator.length();
+      if (floor <= start && lineSeparator.contentEquals(textForHash.subSequence(start,
+          textForHash.length()))) {
+        textForHash.setLength(start);
+        floor = start;
+      }
+    }
+
+    return getMD5Digest().digest(textForHash.toString()
+        .getBytes());
+  }
+
+  private static MessageDigest getMD5Digest() {
     try {
-      final MessageDigest md5 = MessageDigest.getInstance("MD5");
-      return md5.digest(textForHash.getBytes());
+      return MessageDigest.getInstance("MD5");
     } catch (final NoSuchAlgorithmException e) {
-      e.printStackTrace();
+      // MD5は全てのJava実行環境が備えるアルゴリズムである
+      throw new IllegalStateException(e);
     }
-    return new byte[] {};
   }
 
   public boolean isTest() {
-    return path.toLowerCase()
-        .endsWith("test.java") || Stream.of(
-            path.split(File.separator))
-        .anyMatch(l -> l.toLowerCase()
-            .endsWith("test") || l.toLowerCase()
-            .endsWith("tests") || l.equalsIgnoreCase(
-            "tsz") || l.equalsIgnoreCase("testing") || l.equalsIgnoreCase("testsrc")
-            || l.equalsIgnoreCase("testdata"));
+    return isTestPath(path);
   }
 
   public boolean isToy() {
+    return isToyPath(path);
+  }
+
+  /**
+   * 引数で与えられたパスがテストのファイルであるかを返す．パスのみで判定するので，ファイルを読む前に判定できる．
+   *
+   * @param path
+   * @return
+   */
+  public static boolean isTestPath(final String path) {
+    return path.toLowerCase()
+        .endsWith("test.java") || Stream.of(path.split(File.separator))
+            .anyMatch(JavaMethod::isTestDirectoryName);
+  }
+
+  /**
+   * 引数で与えられた名前のディレクトリ以下のファイルが，全てテストのファイルとなるかを返す．
+   * ディレクトリを走査する前に，その中のファイルを読まずに除外するために用いる．
+   *
+   * @param name パスの一つの要素
+   * @return
+   */
+  public static boolean isTestDirectoryName(final String name) {
+    final String lowerName = name.toLowerCase();
+    return lowerName.endsWith("test") || lowerName.endsWith("tests") || lowerName.equals("tsz")
+        || lowerName.equals("testing") || lowerName.equals("testsrc") || lowerName.equals(
+            "testdata");
+  }
+
+  /**
+   * 引数で与えられたパスがサンプルやプログラム例のファイルであるかを返す．
+   *
+   * @param path
+   * @return
+   */
+  public static boolean isToyPath(final String path) {
     return Stream.of(path.split(File.separator))
-        .anyMatch(l -> l.equalsIgnoreCase("sample") || l.equalsIgnoreCase("samples")
-            || l.equalsIgnoreCase("example") || l.equalsIgnoreCase("examples"));
+        .anyMatch(JavaMethod::isToyDirectoryName);
+  }
+
+  /**
+   * 引数で与えられた名前のディレクトリ以下のファイルが，全てサンプルやプログラム例のファイルとなるかを返す．
+   *
+   * @param name パスの一つの要素
+   * @return
+   */
+  public static boolean isToyDirectoryName(final String name) {
+    return name.equalsIgnoreCase("sample") || name.equalsIgnoreCase("samples")
+        || name.equalsIgnoreCase("example") || name.equalsIgnoreCase("examples");
   }
 }
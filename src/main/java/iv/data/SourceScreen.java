@@ -0,0 +1,76 @@
+package iv.data;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * テストおよびトイのファイルを，読み込む前にパスのみで除外する．除外したファイルとディレクトリの数を数える．
+ * 判定には JavaMethod の isTestPath，isToyPath，isTestDirectoryName，isToyDirectoryName を用いる．
+ * 複数のスレッドから呼ばれても良い．
+ */
+public class SourceScreen {
+
+  private final LongAdder tests;
+  private final LongAdder toys;
+  private final LongAdder testDirectories;
+  private final LongAdder toyDirectories;
+
+  public SourceScreen() {
+    this.tests = new LongAdder();
+    this.toys = new LongAdder();
+    this.testDirectories = new LongAdder();
+    this.toyDirectories = new LongAdder();
+  }
+
+  /**
+   * 引数で与えられたパスのファイルを解析する必要があるかを返す．
+   *
+   * @param path
+   * @return テストでもトイでもない場合にtrue
+   */
+  public boolean accept(final String path) {
+    final boolean isTest = JavaMethod.isTestPath(path);
+    final boolean isToy = JavaMethod.isToyPath(path);
+    if (isTest) {
+      tests.increment();
+    }
+    if (isToy) {
+      toys.increment();
+    }
+    return !isTest && !isToy;
+  }
+
+  /**
+   * 引数で与えられた名前のディレクトリを走査する必要があるかを返す．
+   * 走査しないディレクトリの中のファイルは，列挙も読み込みもしないので，getTestsやgetToysに数えない．
+   *
+   * @param name ディレクトリの名前（パスの最後の要素）
+   * @return テストのディレクトリでもトイのディレクトリでもない場合にtrue
+   */
+  public boolean acceptDirectory(final String name) {
+    final boolean isTest = JavaMethod.isTestDirectoryName(name);
+    final boolean isToy = JavaMethod.isToyDirectoryName(name);
+    if (isTest) {
+      testDirectories.increment();
+    }
+    if (isToy) {
+      toyDirectories.increment();
+    }
+    return !isTest && !isToy;
+  }
+
+  public long getTests() {
+    return tests.sum();
+  }
+
+  public long getToys() {
+    return toys.sum();
+  }
+
+  public long getTestDirectories() {
+    return testDirectories.sum();
+  }
+
+  public long getToyDirectories() {
+    return toyDirectories.sum();
+  }
+}
@@ -0,0 +1,49 @@
+package iv.data;
+
+/**
+ * ソースコードの一部分を，文字列にコピーせずに参照する．
+ * 文字列が必要になったときに初めてコピーを作る．
+ */
+public class SourceSlice implements CharSequence {
+
+  private final char[] source;
+  private final int offset;
+  private final int length;
+
+  public SourceSlice(final char[] source, final int offset, final int length) {
+    if (offset < 0 || length < 0 || source.length < offset + length) {
+      throw new IndexOutOfBoundsException(
+          "offset: " + offset + ", length: " + length + ", source: " + source.length);
+    }
+    this.source = source;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(final int index) {
+    if (index < 0 || length <= index) {
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+    }
+    return source[offset + index];
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end) {
+    if (start < 0 || end < start || length < end) {
+      throw new IndexOutOfBoundsException(
+          "start: " + start + ", end: " + end + ", length: " + length);
+    }
+    return new SourceSlice(source, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    return new String(source, offset, length);
+  }
+}
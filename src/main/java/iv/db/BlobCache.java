@@ -0,0 +1,102 @@
+package iv.db;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import iv.data.JavaMethod;
+
+/**
+ * Gitのブロブ（ファイルの内容）ごとに，そこから抽出されたメソッドを記録するキャッシュ．
+ * 内容が同じファイルは構文解析せずに，記録しておいたメソッドを再利用する．
+ * 記録は一定数ずつまとめてデータベースに書き込む．
+ * データベースの読み書きはロックの外で行うので，抽出を行う複数のスレッドから同時に呼び出しても互いを待たせない．
+ */
+public class BlobCache {
+
+  private final JavaMethodDAO dao;
+  private final String profile;
+  private final int batchSize;
+  private final Object flushLock;
+
+  // 書き込み待ちの記録と，書き込み中の記録．入れ替えるときはflushingBlobsを先に設定する
+  private volatile Map<String, List<JavaMethod>> pendingBlobs;
+  private volatile Map<String, List<JavaMethod>> flushingBlobs;
+  private final LongAdder hits;
+  private final LongAdder misses;
+
+  public BlobCache(final JavaMethodDAO dao, final String profile, final int batchSize) {
+    this.dao = dao;
+    this.profile = profile;
+    this.batchSize = batchSize;
+    this.flushLock = new Object();
+    this.pendingBlobs = new ConcurrentHashMap<>();
+    this.flushingBlobs = Collections.emptyMap();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+  }
+
+  /**
+   * 引数で与えられたブロブから抽出されたメソッドを返す．まだ記録されていないブロブの場合はnullを返す．
+   * 返すメソッドのパス，リポジトリ，コミットは，最初にそのブロブを記録したときのものである．
+   *
+   * @param blob
+   * @return
+   */
+  public List<JavaMethod> get(final String blob) {
+
+    // 書き込み待ちから書き込み中に移ったブロブを見落とさないように，書き込み待ちを先に調べる
+    List<JavaMethod> methods = pendingBlobs.get(blob);
+    if (null == methods) {
+      methods = flushingBlobs.get(blob);
+    }
+    if (null == methods) {
+      methods = dao.getBlobMethods(blob, profile);
+    }
+    if (null == methods) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return methods;
+  }
+
+  public void put(final String blob, final List<JavaMethod> methods) {
+    final boolean isFull;
+    synchronized (this) {
+      pendingBlobs.put(blob, methods);
+      isFull = batchSize <= pendingBlobs.size();
+    }
+    if (isFull) {
+      flush();
+    }
+  }
+
+  /**
+   * 書き込み待ちの記録を新しいマップと入れ替えてから，ロックの外でデータベースに書き込む．
+   * 書き込みが終わるまでは，入れ替えた記録もgetから参照できる．
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      final Map<String, List<JavaMethod>> blobs;
+      synchronized (this) {
+        blobs = pendingBlobs;
+        if (blobs.isEmpty()) {
+          return;
+        }
+        flushingBlobs = blobs;
+        pendingBlobs = new ConcurrentHashMap<>();
+      }
+      try {
+        dao.addBlobMethods(blobs, profile);
+      } finally {
+        flushingBlobs = Collections.emptyMap();
+      }
+    }
+  }
+
+  public String getStatistics() {
+    return "blob cache: " + hits.sum() + " hits, " + misses.sum() + " misses";
+  }
+}
@@ -1,6 +1,6 @@
 package iv.db;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -9,17 +9,40 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import org.sqlite.SQLiteConfig;
 import org.sqlite.SQLiteErrorCode;
 import org.sqlite.SQLiteException;
 import iv.IVConfig;
+import iv.data.Fingerprint;
 import iv.data.JavaMethod;
 
+/**
+ * メソッドを記録するSQLiteデータベースへのアクセス．データベースはWALモードで用い，
+ * 問い合わせは読み出し専用のコネクションのプールから，更新は一つの書き込み用のコネクションを持つ
+ * 書き込みスレッドで行う．そのため，問い合わせは他のスレッドの更新やコミットを待たずに並行に実行される．
+ * 更新のメソッドは書き込みスレッドでコミットが終わるまで待ってから戻るので，直後の問い合わせには更新が反映されている．
+ * ただし，テストの生成や実行の結果（setCompilable，setTests，addPair）は待たずにキューに入れ，
+ * 一定の数もしくは一定の時間ごとにまとめてコミットする．
+ * テキストとテストのカラムはTextCompressorで圧縮して記録し，読み出す際に展開する．
+ */
 public class JavaMethodDAO {
 
   static public final String METHODS_SCHEMA = "signature string, " + //
@@ -39,15 +62,84 @@ public class JavaMethodDAO {
       "Target_ESTest blob, " + //
       "Target_ESTest_scaffolding blob, " + //
       "groupID int, " + //
+      "retired int default 0, " + //
       "id integer primary key autoincrement";
 
   static public final String PAIRS_SCHEMA = "leftMethodID int, " + //
       "rightMethodID int, " + //
       "id integer primary key autoincrement";
 
+  static public final String REGISTRATIONS_SCHEMA = "repo string, " + //
+      "revision string, " + //
+      "id integer primary key autoincrement";
+
+  static public final String META_SCHEMA = "key string primary key, " + //
+      "value string";
+
+  static public final String BLOBS_SCHEMA = "blob string, " + //
+      "profile string, " + //
+      "methods int, " + //
+      "primary key (blob, profile)";
+
+  static public final String GROUPS_SCHEMA = "signature string primary key, " + //
+      "eligible int, " + //
+      "hashes int, " + //
+      "groupID int";
+
+  static public final String DICTIONARIES_SCHEMA = "name string unique, " + //
+      "content blob, " + //
+      "id integer primary key autoincrement";
+
+  static public final String BLOB_METHODS_SCHEMA = "blob string, " + //
+      "profile string, " + //
+      "returnType string, " + //
+      "parameters string, " + //
+      "name string, " + //
+      "rtext blob, " + //
+      "ntext blob, " + //
+      "size int, " + //
+      "branches int, " + //
+      "start int, " + //
+      "end int";
+
+  // 分類の対象となるメソッドの条件．引退済みでなく，返値と引数があり，文の数が2以上で分岐の数が1以上のもの
+  private static final String ELIGIBLE = "retired = 0 "
+      + "and substr(signature, 1, 5) != 'void(' and substr(signature, -2) != '()' "
+      + "and 1 < size and 0 < branches";
+
+  // 他のコネクションがロックを持っている場合に待つ時間（ミリ秒）
+  private static final int BUSY_TIMEOUT = 10_000;
+
+  // statusUpdatesの終端を表す番兵
+  private static final Query<Void> END_OF_UPDATES = statements -> null;
+
+  // statusUpdatesに入れられる結果の数（commitGroupの何倍か）．キューが一杯の場合，結果を入れるスレッドは待つ
+  private static final int STATUS_UPDATES_GROUPS = 4;
+
   static public JavaMethodDAO SINGLETON = new JavaMethodDAO();
+
+  // 書き込み用のコネクションとそのPreparedStatementは，書き込みスレッドのみが用いる
   private Connection connector;
+  private StatementCache statements;
+  private ExecutorService writer;
+
+  // 読み出し専用のコネクション．使っていないものがreadersに入っている
+  private List<Reader> allReaders;
+  private BlockingQueue<Reader> readers;
+
+  // まとめてコミットするテストの生成や実行の結果
+  private BlockingQueue<Query<?>> statusUpdates;
+  private Thread flusher;
+  private Thread shutdownHook;
+
+  // 読み出しと遅延書き込みは共有で，closeは排他でロックする．閉じた後の読み出しと遅延書き込みは拒否する
+  private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+  private volatile boolean closed = true;
+
   private IVConfig config;
+  private volatile TextCompressor compressor;
+  private volatile Fingerprint fingerprint;
+  private volatile long conflicts;
 
   private JavaMethodDAO() {
   }
@@ -56,19 +148,78 @@ public class JavaMethodDAO {
 
     this.config = config;
 
+    // 初期化し直す場合は，以前のコネクションとそのPreparedStatementを閉じる
+    if (null != connector) {
+      close();
+    }
+
     try {
       Class.forName("org.sqlite.JDBC");
       final Path dbPath = config.getDatabase();
       connector = DriverManager.getConnection("jdbc:sqlite:" + dbPath.toAbsolutePath());
-      connector.setAutoCommit(false);
+      statements = new StatementCache(connector);
 
       final Statement statement = connector.createStatement();
 
+      // ジャーナルモードはトランザクションの外で変更する必要があるので，自動コミットを止める前に設定する
+      // WALモードでは，書き込み中のトランザクションがあっても他のコネクションから読み出せる
+      if (config.isBulkLoad()) {
+        setBulkLoadPragmas(statement);
+      }
+      statement.execute("pragma journal_mode = wal");
+      statement.execute("pragma busy_timeout = " + BUSY_TIMEOUT);
+      connector.setAutoCommit(false);
+
       // methods テーブルの初期化
       statement.executeUpdate("create table if not exists methods (" + METHODS_SCHEMA + ")");
       statement.executeUpdate(
           "create unique index if not exists sameness on methods (path, start, end, repo, revision)");
 
+      // retiredカラムがない古いデータベースにはカラムを追加する
+      if (!hasColumn(statement, "methods", "retired")) {
+        statement.executeUpdate("alter table methods add column retired int default 0");
+      }
+      statement.executeUpdate(
+          "create index if not exists retirement on methods (repo, path, retired)");
+
+      // シグネチャごとの問い合わせと，分類の対象の絞り込みのための索引
+      // 絞り込みに用いるカラムを全て含むので，絞り込みの際にはテキストを含む行を読まない
+      statement.executeUpdate("drop index if exists signatures");
+      statement.executeUpdate(
+          "create index if not exists signature_groups on methods (retired, signature, hash, size, branches)");
+
+      // registrations テーブルの初期化
+      statement.executeUpdate(
+          "create table if not exists registrations (" + REGISTRATIONS_SCHEMA + ")");
+
+      // blobs テーブルおよび blobmethods テーブルの初期化
+      statement.executeUpdate("create table if not exists blobs (" + BLOBS_SCHEMA + ")");
+      statement.executeUpdate(
+          "create table if not exists blobmethods (" + BLOB_METHODS_SCHEMA + ")");
+      statement.executeUpdate(
+          "create index if not exists blobcontents on blobmethods (blob, profile)");
+
+      // meta テーブルの初期化
+      statement.executeUpdate("create table if not exists meta (" + META_SCHEMA + ")");
+      fingerprint = initializeFingerprint(statement, config.getFingerprint());
+
+      // method_groups テーブルの初期化．テーブルがなかった頃のデータベースでは，登録済みのメソッドから作る
+      // （groupsはSQLのキーワードなので，テーブル名には用いない）
+      final boolean hasGroups = hasTable(statement, "method_groups");
+      statement.executeUpdate(
+          "create table if not exists method_groups (" + GROUPS_SCHEMA + ")");
+      if (!hasGroups) {
+        statement.executeUpdate("insert into method_groups(signature, eligible, hashes) "
+            + "select signature, count(*), count(distinct hash) from methods where " + ELIGIBLE
+            + " group by signature");
+      }
+
+      // dictionaries テーブルの初期化
+      statement.executeUpdate(
+          "create table if not exists dictionaries (" + DICTIONARIES_SCHEMA + ")");
+      compressor = new TextCompressor(!config.isUncompressed());
+      compressor.load(connector);
+
       // pairs テーブルの初期化
       statement.executeUpdate("create table if not exists pairs (" + PAIRS_SCHEMA + ")");
       statement.executeUpdate(
@@ -76,29 +227,306 @@ public class JavaMethodDAO {
 
       connector.commit();
       statement.close();
+
+      // 読み出し専用のコネクションは，スキーマの作成をコミットした後に開く
+      final int readerCount = Math.max(config.getThreads(), Runtime.getRuntime()
+          .availableProcessors());
+      allReaders = new ArrayList<>(readerCount);
+      for (int count = 0; count < readerCount; count++) {
+        allReaders.add(new Reader(dbPath));
+      }
+      readers = new ArrayBlockingQueue<>(readerCount, false, allReaders);
+      writer = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "database-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      statusUpdates = new ArrayBlockingQueue<>(config.getCommitGroup() * STATUS_UPDATES_GROUPS);
+      flusher = new Thread(this::flushStatusUpdates, "status-flusher");
+      flusher.setDaemon(true);
+      flusher.start();
+      closed = false;
+
+      // System.exitやSIGINT，SIGTERMで終了する場合にも，キューに残っている結果をコミットしてから閉じる
+      shutdownHook = new Thread(this::close, "database-shutdown");
+      Runtime.getRuntime()
+          .addShutdownHook(shutdownHook);
     } catch (final ClassNotFoundException | SQLException e) {
       e.printStackTrace();
-      System.exit(0);
+      System.exit(1);
     }
   }
 
-  synchronized public void addMethods(final List<JavaMethod> methods) {
+  /**
+   * 書き込みスレッドで更新を行い，コミットが終わるまで待つ．失敗した場合はロールバックしてdefaultValueを返す．
+   *
+   * @param update
+   * @param defaultValue
+   * @return
+   * @throws IllegalStateException データベースが閉じられている場合
+   */
+  private <T> T write(final Query<T> update, final T defaultValue) {
+    final Future<T> result;
+    try {
+      result = writer.submit(() -> {
+        try {
+          final T value = update.execute(statements);
+          connector.commit();
+          compressor.commit();
+          return value;
+        } catch (final SQLException e) {
+          e.printStackTrace();
+          connector.rollback();
+          compressor.rollback();
+          return defaultValue;
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      throw new IllegalStateException("database is closed", e);
+    }
+    try {
+      return result.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
+    } catch (final ExecutionException e) {
+      e.getCause()
+          .printStackTrace();
+    }
+    return defaultValue;
+  }
 
-    if (null == methods || 0 == methods.size()) {
+  /**
+   * テストの生成や実行の結果をキューに入れ，コミットを待たずに戻る．キューが一杯の場合は空きができるまで待つ．
+   * 戻った時点ではコミットされていないので，プロセスが強制終了（SIGKILL）された場合は，
+   * キューに残っている結果（最大でcommitGroupの4倍）とコミット中の結果が失われる．
+   *
+   * @param update
+   * @throws IllegalStateException データベースが閉じられている場合
+   */
+  private void writeBehind(final Query<?> update) {
+    lifecycle.readLock()
+        .lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("database is closed");
+      }
+      statusUpdates.put(update);
+    } catch (final InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
+      throw new IllegalStateException("interrupted while queuing a status update", e);
+    } finally {
+      lifecycle.readLock()
+          .unlock();
+    }
+  }
+
+  /**
+   * キューに入れられた結果を，commitGroupの数に達するか，最初の結果からcommitWindowミリ秒が経つまで集め，
+   * 一つのトランザクションでコミットする．番兵を受け取ると，それまでの結果をコミットして終わる．
+   */
+  private void flushStatusUpdates() {
+    final int groupSize = config.getCommitGroup();
+    final long window = TimeUnit.MILLISECONDS.toNanos(config.getCommitWindow());
+    final List<Query<?>> group = new ArrayList<>(groupSize);
+    boolean ended = false;
+    while (!ended) {
+      try {
+        final Query<?> first = statusUpdates.take();
+        if (END_OF_UPDATES == first) {
+          break;
+        }
+        group.add(first);
+        final long deadline = System.nanoTime() + window;
+        while (group.size() < groupSize) {
+          final long remaining = deadline - System.nanoTime();
+          final Query<?> update = 0 < remaining ? statusUpdates.poll(remaining,
+              TimeUnit.NANOSECONDS) : null;
+          if (null == update) {
+            break;
+          }
+          if (END_OF_UPDATES == update) {
+            ended = true;
+            break;
+          }
+          group.add(update);
+        }
+      } catch (final InterruptedException e) {
+        ended = true;
+      }
+      commitGroup(group);
+      group.clear();
+    }
+  }
+
+  private void commitGroup(final List<Query<?>> group) {
+    if (group.isEmpty()) {
       return;
     }
 
+    // 一つの結果の失敗で他の結果を失わないように，失敗したものだけを報告して残りはコミットする
+    write(statements -> {
+      for (final Query<?> update : group) {
+        try {
+          update.execute(statements);
+        } catch (final SQLException e) {
+          e.printStackTrace();
+        }
+      }
+      return null;
+    }, null);
+  }
+
+  /**
+   * 空いている読み出し専用のコネクションで問い合わせを行う．失敗した場合はdefaultValueを返す．
+   *
+   * @param query
+   * @param defaultValue
+   * @return
+   * @throws IllegalStateException データベースが閉じられている場合
+   */
+  private <T> T read(final Query<T> query, final T defaultValue) {
+    lifecycle.readLock()
+        .lock();
     try {
-      final PreparedStatement statement = this.connector.prepareStatement(
-          "insert into methods(signature, name, rtext, ntext, size, branches, hash, path, start, end, repo, revision, compilable, tests, groupID) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-      for (final JavaMethod method : methods) {
+      if (closed) {
+        throw new IllegalStateException("database is closed");
+      }
+      final Reader reader;
+      try {
+        reader = readers.take();
+      } catch (final InterruptedException e) {
+        Thread.currentThread()
+            .interrupt();
+        return defaultValue;
+      }
+      try {
+        return query.execute(reader.statements);
+      } catch (final SQLException e) {
+        e.printStackTrace();
+        return defaultValue;
+      } finally {
+        readers.add(reader);
+      }
+    } finally {
+      lifecycle.readLock()
+          .unlock();
+    }
+  }
+
+  /**
+   * 大量のメソッドを登録するための設定を行う．同期はチェックポイント時のみとする（電源断では直前のトランザクションが失われうるが，データベースは壊れない）．
+   * page_sizeは新しいデータベースにのみ反映される．
+   */
+  private void setBulkLoadPragmas(final Statement statement) throws SQLException {
+    statement.execute("pragma page_size = 8192");
+    statement.execute("pragma synchronous = normal");
+    statement.execute("pragma cache_size = -262144"); // 256MiB
+    statement.execute("pragma mmap_size = 1073741824"); // 1GiB
+    statement.execute("pragma temp_store = memory");
+  }
+
+  /**
+   * データベースに記録されたハッシュのアルゴリズムを返す．記録がなければ，新しいデータベースには指定されたもの
+   * （指定がなければmurmur3），metaテーブルがなかった頃のデータベースにはMD5を記録する．
+   * 一つのデータベースの中でアルゴリズムが混在しないように，記録と異なるものが指定された場合は終了する．
+   */
+  private Fingerprint initializeFingerprint(final Statement statement,
+      final Fingerprint specified) throws SQLException {
+
+    try (final ResultSet results = statement.executeQuery(
+        "select value from meta where key = 'hash'")) {
+      if (results.next()) {
+        final Fingerprint recorded = Fingerprint.get(results.getString(1));
+        if (null != specified && specified != recorded) {
+          System.err.println("the database uses " + recorded.name()
+              .toLowerCase() + " hashes; \"-a\" must not specify another algorithm.");
+          System.exit(1);
+        }
+        return recorded;
+      }
+    }
+
+    final boolean hasMethods;
+    try (final ResultSet results = statement.executeQuery("select 1 from methods limit 1")) {
+      hasMethods = results.next();
+    }
+    final Fingerprint fingerprint = hasMethods ? Fingerprint.MD5
+        : null != specified ? specified : Fingerprint.MURMUR3_128;
+    if (hasMethods && null != specified && specified != fingerprint) {
+      System.err.println("the database has methods hashed with md5; \"-a\" must not specify "
+          + "another algorithm.");
+      System.exit(1);
+    }
+    try (final PreparedStatement insert = connector.prepareStatement(
+        "insert into meta(key, value) values ('hash', ?)")) {
+      insert.setString(1, fingerprint.name());
+      insert.executeUpdate();
+    }
+    return fingerprint;
+  }
+
+  /**
+   * このデータベースで用いるハッシュのアルゴリズムを返す．
+   *
+   * @return
+   */
+  synchronized public Fingerprint getFingerprint() {
+    return fingerprint;
+  }
+
+  private boolean hasTable(final Statement statement, final String table) throws SQLException {
+    try (final ResultSet results = statement.executeQuery(
+        "select 1 from sqlite_master where type = 'table' and name = '" + table + "'")) {
+      return results.next();
+    }
+  }
+
+  private boolean hasColumn(final Statement statement, final String table, final String column)
+      throws SQLException {
+    try (final ResultSet results = statement.executeQuery("pragma table_info(" + table + ")")) {
+      while (results.next()) {
+        if (column.equals(results.getString("name"))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * メソッドを登録する．挿入はchunkSizeの行ごとにまとめて送る．
+   * 既に登録されているメソッド（パス，位置，リポジトリ，リビジョンが同じもの）は無視し，その数を数える．
+   * 挿入したメソッドのうち分類の対象となるものは，同じトランザクションでmethod_groupsに数える．
+   *
+   * @param methods
+   */
+  public void addMethods(final List<JavaMethod> methods) {
+
+    if (null == methods || 0 == methods.size()) {
+      return;
+    }
+
+    final int chunkSize = config.getChunkSize();
+    trainTexts(methods);
+    final List<byte[][]> texts = methods.stream()
+        .map(this::compressTexts)
+        .collect(Collectors.toList());
+    write(statements -> {
+      final PreparedStatement statement = statements.get(
+          "insert or ignore into methods(signature, name, rtext, ntext, size, branches, hash, path, start, end, repo, revision, compilable, tests, groupID) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+      final List<JavaMethod> chunk = new ArrayList<>(Math.min(chunkSize, methods.size()));
+      for (int index = 0; index < methods.size(); index++) {
+        final JavaMethod method = methods.get(index);
         statement.setString(1, method.getSignatureText());
         statement.setString(2, method.name);
-        statement.setBytes(3, method.rawText.getBytes());
-        statement.setBytes(4, method.normalizedText.getBytes());
+        statement.setBytes(3, texts.get(index)[0]);
+        statement.setBytes(4, texts.get(index)[1]);
         statement.setInt(5, method.size);
         statement.setInt(6, method.branches);
-        statement.setBytes(7, method.getMD5());
+        statement.setBytes(7, method.getHash(fingerprint));
         statement.setString(8, method.path);
         statement.setInt(9, method.startLine);
         statement.setInt(10, method.endLine);
@@ -107,41 +535,303 @@ public class JavaMethodDAO {
         statement.setInt(13, -1);
         statement.setInt(14, -1);
         statement.setInt(15, -1);
+        statement.addBatch();
+        chunk.add(method);
 
-        try {
-          statement.execute();
-        } catch (final SQLiteException e) {
-          final SQLiteErrorCode code = e.getResultCode();
-          if (code.name()
-              .equals("SQLITE_CONSTRAINT_UNIQUE")) {
-            System.err.println(
-                "already registered: \"" + method.getNamedSignatureText() + "\" in " + method.path);
-          } else {
-            e.printStackTrace();
+        if (chunkSize <= chunk.size()) {
+          addToGroups(statements, chunk, statement.executeBatch());
+          chunk.clear();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        addToGroups(statements, chunk, statement.executeBatch());
+      }
+      return null;
+    }, null);
+  }
+
+  /**
+   * 挿入したメソッドのうち分類の対象となるものを，method_groupsのシグネチャの行に数える．
+   * 異なるハッシュ値の数は，このチャンクで対象のメソッドを挿入したシグネチャごとに，methodsから数え直す．
+   * （一つのチャンクに同じハッシュ値のメソッドが複数ある場合も，一つと数える）
+   * insert or ignoreで無視された行は更新数が0になるので，その数を数える．
+   */
+  private void addToGroups(final StatementCache statements, final List<JavaMethod> chunk,
+      final int[] counts) throws SQLException {
+    final Map<String, Integer> eligibles = new LinkedHashMap<>();
+    for (int index = 0; index < counts.length; index++) {
+      if (0 == counts[index]) {
+        conflicts++;
+        continue;
+      }
+      final JavaMethod method = chunk.get(index);
+      final String signature = method.getSignatureText();
+      if (isEligible(signature, method)) {
+        eligibles.merge(signature, 1, Integer::sum);
+      }
+    }
+
+    final PreparedStatement groupStatement = statements.get(
+        "insert into method_groups(signature, eligible, hashes) values (?, ?, "
+            + "(select count(distinct hash) from methods where " + ELIGIBLE
+            + " and signature = ?)) on conflict(signature) do update set "
+            + "eligible = eligible + excluded.eligible, hashes = excluded.hashes");
+    for (final Map.Entry<String, Integer> entry : eligibles.entrySet()) {
+      groupStatement.setString(1, entry.getKey());
+      groupStatement.setInt(2, entry.getValue());
+      groupStatement.setString(3, entry.getKey());
+      groupStatement.executeUpdate();
+    }
+  }
+
+  // rtextとntextの辞書がまだなければ，与えられたメソッドのテキストから書き込みスレッドで作ってコミットする
+  // 圧縮は呼び出し側のスレッドで行うので，辞書は圧縮する前にコミットしておく
+  private void trainTexts(final List<JavaMethod> methods) {
+    if (!compressor.needsDictionary("rtext") && !compressor.needsDictionary("ntext")) {
+      return;
+    }
+    write(statements -> {
+      compressor.train(connector, "rtext", methods.stream()
+          .map(JavaMethod::getRawTextBytes)
+          .collect(Collectors.toList()));
+      compressor.train(connector, "ntext", methods.stream()
+          .map(JavaMethod::getNormalizedTextBytes)
+          .collect(Collectors.toList()));
+      return null;
+    }, null);
+  }
+
+  // 書き込みスレッドでは記録のみを行うように，rtextとntextを呼び出し側のスレッドで圧縮する
+  private byte[][] compressTexts(final JavaMethod method) {
+    return new byte[][] {compressor.compress("rtext", method.getRawTextBytes()),
+        compressor.compress("ntext", method.getNormalizedTextBytes())};
+  }
+
+  // ELIGIBLEと同じ条件．登録するメソッドは引退済みではない
+  private static boolean isEligible(final String signature, final JavaMethod method) {
+    return !signature.startsWith("void(") && !signature.endsWith("()") && 1 < method.size
+        && 0 < method.branches;
+  }
+
+  /**
+   * 既に登録されていたために無視したメソッドの数を返す．
+   *
+   * @return
+   */
+  public long getConflictCount() {
+    return conflicts;
+  }
+
+  /**
+   * 引数で与えられたリポジトリについて，最後に登録したリビジョンを返す．まだ登録していない場合はnullを返す．
+   *
+   * @param repo
+   * @return
+   */
+  public String getLastRevision(final String repo) {
+
+    return read(statements -> {
+      for (final String sql : new String[] {
+          "select revision from registrations where repo = ? order by id desc limit 1",
+          // registrations テーブルがなかった頃に登録されたメソッドからも調べる
+          "select revision from methods where repo = ? order by id desc limit 1"}) {
+        final PreparedStatement statement = statements.get(sql);
+        statement.setString(1, repo);
+        try (final ResultSet results = statement.executeQuery()) {
+          if (results.next()) {
+            return results.getString(1);
           }
         }
       }
+      return null;
+    }, null);
+  }
 
-      connector.commit();
-      statement.close();
+  public void addRegistration(final String repo, final String revision) {
 
-    } catch (final SQLException e) {
-      e.printStackTrace();
+    write(statements -> {
+      final PreparedStatement statement = statements.get(
+          "insert into registrations(repo, revision) values (?, ?)");
+      statement.setString(1, repo);
+      statement.setString(2, revision);
+      statement.executeUpdate();
+      return null;
+    }, null);
+  }
+
+  /**
+   * 引数で与えられたパスについて，指定したリビジョン以外で登録されたメソッドを引退済みにする．
+   * 引退済みのメソッドは分類の対象にならない．method_groupsの該当するシグネチャの数は数え直すが，グループIDは変えない．
+   *
+   * @param repo
+   * @param paths
+   * @param revision
+   * @return 引退済みにしたメソッドの数
+   */
+  public int retireMethods(final String repo, final List<String> paths, final String revision) {
+
+    return write(statements -> {
+      int retired = 0;
+      final Set<String> signatures = new HashSet<>();
+      final PreparedStatement signatureStatement = statements.get(
+          "select distinct signature from methods where repo = ? and path = ? and retired = 0 and revision != ?");
+      final PreparedStatement statement = statements.get(
+          "update methods set retired = 1 where repo = ? and path = ? and retired = 0 and revision != ?");
+      for (final String path : paths) {
+        signatureStatement.setString(1, repo);
+        signatureStatement.setString(2, path);
+        signatureStatement.setString(3, revision);
+        try (final ResultSet results = signatureStatement.executeQuery()) {
+          while (results.next()) {
+            signatures.add(results.getString(1));
+          }
+        }
+        statement.setString(1, repo);
+        statement.setString(2, path);
+        statement.setString(3, revision);
+        retired += statement.executeUpdate();
+      }
+
+      final PreparedStatement groupStatement = statements.get(
+          "update method_groups set eligible = (select count(*) from methods where " + ELIGIBLE
+              + " and signature = ?1), hashes = (select count(distinct hash) from methods where "
+              + ELIGIBLE + " and signature = ?1) where signature = ?1");
+      for (final String signature : signatures) {
+        groupStatement.setString(1, signature);
+        groupStatement.executeUpdate();
+      }
+      return retired;
+    }, 0);
+  }
+
+  /**
+   * 引数で与えられたブロブから抽出されたメソッドを返す．ブロブがまだ記録されていない場合はnullを返す．
+   * 返すメソッドのパス，リポジトリ，コミットはnullである．
+   *
+   * @param blob
+   * @param profile
+   * @return
+   */
+  public List<JavaMethod> getBlobMethods(final String blob, final String profile) {
+
+    return read(statements -> {
+      final PreparedStatement blobStatement = statements.get(
+          "select methods from blobs where blob = ? and profile = ?");
+      blobStatement.setString(1, blob);
+      blobStatement.setString(2, profile);
+      final int count;
+      try (final ResultSet blobResults = blobStatement.executeQuery()) {
+        if (!blobResults.next()) {
+          return null;
+        }
+        count = blobResults.getInt(1);
+      }
+
+      final List<JavaMethod> methods = new ArrayList<>(count);
+      if (0 == count) {
+        return methods;
+      }
+
+      final PreparedStatement statement = statements.get(
+          "select returnType, parameters, name, rtext, ntext, size, branches, start, end from blobmethods where blob = ? and profile = ? order by rowid");
+      statement.setString(1, blob);
+      statement.setString(2, profile);
+      try (final ResultSet results = statement.executeQuery()) {
+        while (results.next()) {
+          final String returnType = results.getString(1);
+          final String parameters = results.getString(2);
+          final String name = results.getString(3);
+          final byte[] rtext = compressor.decompress(results.getBytes(4));
+          final byte[] ntext = compressor.decompress(results.getBytes(5));
+          final int size = results.getInt(6);
+          final int branches = results.getInt(7);
+          final int start = results.getInt(8);
+          final int end = results.getInt(9);
+          final JavaMethod method = new JavaMethod(returnType, name, rtext, ntext, size, branches,
+              null, start, end, null, null, -1);
+          if (!parameters.isEmpty()) {
+            for (final String parameter : parameters.split(";")) {
+              method.addParameter(parameter);
+            }
+          }
+          methods.add(method);
+        }
+      }
+      return methods;
+    }, null);
+  }
+
+  /**
+   * ブロブとそこから抽出されたメソッドを記録する．メソッドが抽出されなかったブロブも記録する．
+   *
+   * @param blobs
+   * @param profile
+   */
+  public void addBlobMethods(final Map<String, List<JavaMethod>> blobs, final String profile) {
+
+    if (null == blobs || blobs.isEmpty()) {
+      return;
+    }
+
+    trainTexts(blobs.values()
+        .stream()
+        .flatMap(List::stream)
+        .collect(Collectors.toList()));
+    final Map<String, List<byte[][]>> texts = new HashMap<>();
+    for (final Map.Entry<String, List<JavaMethod>> entry : blobs.entrySet()) {
+      texts.put(entry.getKey(), entry.getValue()
+          .stream()
+          .map(this::compressTexts)
+          .collect(Collectors.toList()));
     }
+    write(statements -> {
+      final PreparedStatement blobStatement = statements.get(
+          "insert or ignore into blobs(blob, profile, methods) values (?, ?, ?)");
+      final PreparedStatement statement = statements.get(
+          "insert into blobmethods(blob, profile, returnType, parameters, name, rtext, ntext, size, branches, start, end) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+      for (final Map.Entry<String, List<JavaMethod>> entry : blobs.entrySet()) {
+        final String blob = entry.getKey();
+        final List<JavaMethod> methods = entry.getValue();
+        blobStatement.setString(1, blob);
+        blobStatement.setString(2, profile);
+        blobStatement.setInt(3, methods.size());
+
+        // 既に記録されているブロブのメソッドは重複して記録しない
+        if (0 == blobStatement.executeUpdate()) {
+          continue;
+        }
+
+        final List<byte[][]> blobTexts = texts.get(blob);
+        for (int index = 0; index < methods.size(); index++) {
+          final JavaMethod method = methods.get(index);
+          statement.setString(1, blob);
+          statement.setString(2, profile);
+          statement.setString(3, method.returnType);
+          statement.setString(4, String.join(";", method.getParameters()));
+          statement.setString(5, method.name);
+          statement.setBytes(6, blobTexts.get(index)[0]);
+          statement.setBytes(7, blobTexts.get(index)[1]);
+          statement.setInt(8, method.size);
+          statement.setInt(9, method.branches);
+          statement.setInt(10, method.startLine);
+          statement.setInt(11, method.endLine);
+          statement.executeUpdate();
+        }
+      }
+      return null;
+    }, null);
   }
 
-  synchronized public void setCompilable(final int id, final boolean compilable) {
+  public void setCompilable(final int id, final boolean compilable) {
 
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
+    writeBehind(statements -> {
+      final PreparedStatement statement = statements.get(
           "update methods set compilable = ? where id = ?");
       statement.setBoolean(1, compilable);
       statement.setInt(2, id);
       statement.executeUpdate();
-      connector.commit();
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
+      return null;
+    });
   }
 
   public boolean isCompilable(final String id) {
@@ -153,27 +843,23 @@ public class JavaMethodDAO {
     }
   }
 
-  synchronized public boolean isCompilable(final int id) {
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
+  public boolean isCompilable(final int id) {
+    return read(statements -> {
+      final PreparedStatement statement = statements.get(
           "select compilable from methods where id = ?");
       statement.setInt(1, id);
-      final ResultSet results = statement.executeQuery();
-
-      // 該当するIDのメソッドがない場合にはfalseを返す
-      if (!results.next()) {
-        return false;
-      }
+      try (final ResultSet results = statement.executeQuery()) {
 
-      // 該当するIDのメソッドがある場合にはそのcompilableカラムをチェックする
-      final int compilable = results.getInt(1);
-      return compilable == 1;
-
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
+        // 該当するIDのメソッドがない場合にはfalseを返す
+        if (!results.next()) {
+          return false;
+        }
 
-    return false;
+        // 該当するIDのメソッドがある場合にはそのcompilableカラムをチェックする
+        final int compilable = results.getInt(1);
+        return compilable == 1;
+      }
+    }, false);
   }
 
   public int getNumberOfTests(final String id) {
@@ -185,27 +871,23 @@ public class JavaMethodDAO {
     }
   }
 
-  synchronized public int getNumberOfTests(final int id) {
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
+  public int getNumberOfTests(final int id) {
+    return read(statements -> {
+      final PreparedStatement statement = statements.get(
           "select tests from methods where id = ?");
       statement.setInt(1, id);
-      final ResultSet results = statement.executeQuery();
+      try (final ResultSet results = statement.executeQuery()) {
 
-      // 該当するIDのメソッドがない場合には0を返す
-      if (!results.next()) {
-        return 0;
-      }
-
-      // 該当するIDのメソッドがある場合にはそのtestsカラムの値を返す
-      final int tests = results.getInt(1);
-      return tests;
-
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
+        // 該当するIDのメソッドがない場合には0を返す
+        if (!results.next()) {
+          return 0;
+        }
 
-    return 0;
+        // 該当するIDのメソッドがある場合にはそのtestsカラムの値を返す
+        final int tests = results.getInt(1);
+        return tests;
+      }
+    }, 0);
   }
 
   public boolean exists(final String id) {
@@ -217,151 +899,293 @@ public class JavaMethodDAO {
     }
   }
 
-  synchronized public boolean exists(final int id) {
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
-          "select * from methods where id = ?");
+  public boolean exists(final int id) {
+    return read(statements -> {
+      // 存在のみを調べるので，テキストやテストなどの大きなカラムは読まない
+      final PreparedStatement statement = statements.get("select 1 from methods where id = ?");
       statement.setInt(1, id);
-      final ResultSet results = statement.executeQuery();
-      return results.next();
-
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
-
-    return false;
+      try (final ResultSet results = statement.executeQuery()) {
+        return results.next();
+      }
+    }, false);
   }
 
-  synchronized public void setTests(final int id, final int tests, final String target_ESTest,
+  public void setTests(final int id, final int tests, final String target_ESTest,
       final String target_ESTest_scaffolding) {
 
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
+    final byte[] test = target_ESTest.getBytes();
+    final byte[] scaffolding = target_ESTest_scaffolding.getBytes();
+
+    // scaffoldingはメソッドによらずほとんど同じなので，最初のものを辞書とすると以降は大部分が辞書への参照になる
+    // 辞書は書き込みスレッドで作ってコミットし，圧縮はこのスレッドで行う
+    // 空のテキストからは辞書を作らない
+    if ((0 < test.length && compressor.needsDictionary("Target_ESTest")) || (0 < scaffolding.length
+        && compressor.needsDictionary("Target_ESTest_scaffolding"))) {
+      write(statements -> {
+        compressor.train(connector, "Target_ESTest", Collections.singletonList(test));
+        compressor.train(connector, "Target_ESTest_scaffolding",
+            Collections.singletonList(scaffolding));
+        return null;
+      }, null);
+    }
+    final byte[] compressedTest = compressor.compress("Target_ESTest", test);
+    final byte[] compressedScaffolding = compressor.compress("Target_ESTest_scaffolding",
+        scaffolding);
+
+    writeBehind(statements -> {
+      final PreparedStatement statement = statements.get(
           "update methods set tests = ?, Target_ESTest = ?, Target_ESTest_scaffolding = ? where id = ?");
       statement.setInt(1, tests);
-      statement.setBytes(2, target_ESTest.getBytes());
-      statement.setBytes(3, target_ESTest_scaffolding.getBytes());
+      statement.setBytes(2, compressedTest);
+      statement.setBytes(3, compressedScaffolding);
       statement.setInt(4, id);
       statement.executeUpdate();
-      connector.commit();
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
+      return null;
+    });
   }
 
-  synchronized public void setGroup(final Set<Integer> methodIDs, final int groupID) {
-
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
+  /**
+   * メソッドのグループIDを記録する．分類の結果なので，コミットを待たずに戻る．
+   *
+   * @param methodIDs
+   * @param groupID
+   */
+  public void setGroup(final Set<Integer> methodIDs, final int groupID) {
+
+    final List<Integer> ids = new ArrayList<>(methodIDs);
+    writeBehind(statements -> {
+      final PreparedStatement statement = statements.get(
           "update methods set groupID = ? where id = ?");
-      for (final Integer methodID : methodIDs) {
+      for (final Integer methodID : ids) {
         statement.setInt(1, groupID);
         statement.setInt(2, methodID);
         statement.addBatch();
       }
       statement.executeBatch();
-      connector.commit();
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
+      return null;
+    });
   }
 
-  synchronized public List<String> getSignatures() {
-
-    final List<String> signatures = new ArrayList<>();
+  /**
+   * 異なるハッシュ値のメソッドが2つ以上あり，まだグループIDのないシグネチャに，シグネチャの順にグループIDを割り当てる．
+   * 既存のグループIDの最大値の次から割り当てるので，一度割り当てたグループIDは後の登録や引退で変わらない．
+   *
+   * @return 割り当てたグループの数
+   */
+  public int assignGroupIDs() {
+
+    return write(statements -> {
+      final PreparedStatement maxStatement = statements.get(
+          "select coalesce(max(groupID), 0) from method_groups");
+      int groupID;
+      try (final ResultSet results = maxStatement.executeQuery()) {
+        groupID = results.next() ? results.getInt(1) : 0;
+      }
 
-    try {
-      final Statement statement = connector.createStatement();
-      final ResultSet results = statement.executeQuery("select distinct(signature) from methods");
-      while (results.next()) {
-        final String signature = results.getString(1);
-        signatures.add(signature);
+      final List<String> signatures = new ArrayList<>();
+      final PreparedStatement signatureStatement = statements.get(
+          "select signature from method_groups where groupID is null and 2 <= hashes order by signature");
+      try (final ResultSet results = signatureStatement.executeQuery()) {
+        while (results.next()) {
+          signatures.add(results.getString(1));
+        }
       }
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
 
-    return signatures;
+      final PreparedStatement statement = statements.get(
+          "update method_groups set groupID = ? where signature = ?");
+      for (final String signature : signatures) {
+        statement.setInt(1, ++groupID);
+        statement.setString(2, signature);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+      return signatures.size();
+    }, 0);
   }
 
-  synchronized public List<JavaMethod> getMethods(final String signature) {
-
-    final Set<JavaMethod> methods = new TreeSet<>(new Comparator<JavaMethod>() {
-      @Override
-      public int compare(final JavaMethod o1, final JavaMethod o2) {
-        return o1.normalizedText.compareTo(o2.normalizedText);
+  /**
+   * 分類の対象となるグループのグループIDと，その異なるハッシュ値の数をグループIDの順に返す．
+   * methodsテーブルは読まない．グループIDがまだ割り当てられていないものは含まない．
+   *
+   * @return
+   */
+  public Map<Integer, Integer> getCandidateGroups() {
+
+    final Map<Integer, Integer> groups = new LinkedHashMap<>();
+
+    return read(statements -> {
+      final PreparedStatement statement = statements.get(
+          "select groupID, hashes from method_groups where groupID is not null and 2 <= hashes order by groupID");
+      try (final ResultSet results = statement.executeQuery()) {
+        while (results.next()) {
+          groups.put(results.getInt(1), results.getInt(2));
+        }
       }
-    });
+      return groups;
+    }, groups);
+  }
 
-    try {
-      final Statement statement = connector.createStatement();
-      final ResultSet results = statement.executeQuery(
-          "select name, rtext, ntext, size, branches, path, start, end, repo, revision, id from methods where signature = \""
-              + signature + "\"");
-      while (results.next()) {
-        final String name = results.getString(1);
-        final String rtext = new String(results.getBytes(2), StandardCharsets.UTF_8);
-        final String ntext = new String(results.getBytes(3), StandardCharsets.UTF_8);
-        final int size = results.getInt(4);
-        final int branches = results.getInt(5);
-        final String path = results.getString(6);
-        final int start = results.getInt(7);
-        final int end = results.getInt(8);
-        final String repo = results.getString(9);
-        final String commit = results.getString(10);
-        final int id = results.getInt(11);
-        final JavaMethod method = new JavaMethod(signature, name, rtext, ntext, size, branches,
-            path, start, end, repo, commit, id);
-        methods.add(method);
+  /**
+   * 分類の対象となるメソッドを，グループIDの順に一度の走査で読み出し，グループごとにconsumerに渡す．
+   * 対象は，引退済みでなく，返値と引数があり，文の数が2以上で分岐の数が1以上のメソッドである．
+   * ハッシュ値が同じメソッドは最もIDが小さいもののみとし，method_groupsで異なるハッシュ値の数が2以上で，
+   * グループIDが割り当てられているシグネチャのみを渡す．
+   * 絞り込みは索引のみで行い，テキストは残ったメソッドのもののみを読む．正規化文字列は読まない．
+   * メモリ上に保持するのは一つのグループのメソッドのみである．
+   *
+   * @param consumer グループID，シグネチャ，そのメソッドを受け取る
+   */
+  public void forEachClassificationGroup(final GroupConsumer consumer) {
+
+    read(statements -> {
+      final PreparedStatement statement = statements.get(
+          "select m.signature, m.name, m.rtext, m.size, m.branches, m.path, m.start, m.end, m.repo, m.revision, m.id, g.groupID "
+              + "from method_groups as g join ("
+              + "select signature, min(id) as id from methods where " + ELIGIBLE
+              + " group by signature, hash) as c on c.signature = g.signature "
+              + "join methods as m on m.id = c.id "
+              + "where g.groupID is not null and 2 <= g.hashes order by g.groupID, c.id");
+      try (final ResultSet results = statement.executeQuery()) {
+        String signature = null;
+        int groupID = 0;
+        final List<JavaMethod> methods = new ArrayList<>();
+        while (results.next()) {
+          final String name = results.getString(2);
+          final byte[] rtext = compressor.decompress(results.getBytes(3));
+          final int size = results.getInt(4);
+          final int branches = results.getInt(5);
+          final String path = results.getString(6);
+          final int start = results.getInt(7);
+          final int end = results.getInt(8);
+          final String repo = results.getString(9);
+          final String commit = results.getString(10);
+          final int id = results.getInt(11);
+          final JavaMethod method = new JavaMethod(results.getString(1), name, rtext, null, size,
+              branches, path, start, end, repo, commit, id);
+          if (!method.returnType.equals(signature)) {
+            if (null != signature) {
+              consumer.accept(groupID, signature, new ArrayList<>(methods));
+            }
+            signature = method.returnType;
+            groupID = results.getInt(12);
+            methods.clear();
+          }
+          methods.add(method);
+        }
+        if (null != signature) {
+          consumer.accept(groupID, signature, new ArrayList<>(methods));
+        }
       }
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
+      return null;
+    }, null);
+  }
 
-    return methods.stream()
-        .collect(Collectors.toList());
+  // methodsテーブルの行から，シグネチャを返値の型としてメソッドを作る
+  private JavaMethod toMethod(final ResultSet results) throws SQLException {
+    final String signature = results.getString(1);
+    final String name = results.getString(2);
+    final byte[] rtext = compressor.decompress(results.getBytes(3));
+    final byte[] ntext = compressor.decompress(results.getBytes(4));
+    final int size = results.getInt(5);
+    final int branches = results.getInt(6);
+    final String path = results.getString(7);
+    final int start = results.getInt(8);
+    final int end = results.getInt(9);
+    final String repo = results.getString(10);
+    final String commit = results.getString(11);
+    final int id = results.getInt(12);
+    return new JavaMethod(signature, name, rtext, ntext, size, branches, path, start, end, repo,
+        commit, id);
   }
 
-  synchronized public boolean isDifferentSyntax(final Set<Integer> methodIDs) {
+  public boolean isDifferentSyntax(final Set<Integer> methodIDs) {
 
-    try {
-      final PreparedStatement statement = connector.prepareStatement(
-          "select hash from methods where id = ?");
-      final Set<String> hashes = new HashSet<>();
+    return read(statements -> {
+      final PreparedStatement statement = statements.get("select hash from methods where id = ?");
+      // ハッシュ値はバイト列のまま比較する．文字列に変換すると異なる値が同じ文字列になることがある
+      final Set<ByteBuffer> hashes = new HashSet<>();
       for (Integer methodID : methodIDs) {
         statement.setInt(1, methodID);
-        final ResultSet results = statement.executeQuery();
-        assert results.next() : "no such method ID.";
-        final byte[] hash = results.getBytes(1);
-        hashes.add(new String(hash, StandardCharsets.UTF_8));
+        try (final ResultSet results = statement.executeQuery()) {
+          final boolean exists = results.next();
+          assert exists : "no such method ID.";
+          final byte[] hash = results.getBytes(1);
+          hashes.add(ByteBuffer.wrap(hash));
+        }
       }
 
       return 1 < hashes.size();
-
-    } catch (final SQLException e) {
-      e.printStackTrace();
-    }
-
-    return false;
+    }, false);
   }
 
+  /**
+   * キューに残っている結果と書き込みスレッドに渡された更新が全て終わるのを待ってから，全てのコネクションを閉じる．
+   * 最後にWALの内容をデータベースに書き戻す．実行中の読み出しや遅延書き込みがある場合は，それらが終わるのを待つ．
+   * 閉じた後の読み出しと遅延書き込みはIllegalStateExceptionとなる．
+   * shutdownHookからも呼ばれるので，失敗してもSystem.exitは呼ばずに，閉じたものとして扱ってから例外を投げる．
+   *
+   * @throws IllegalStateException コネクションを正しく閉じられなかった場合
+   */
   synchronized public void close() {
+    if (null == connector) {
+      return;
+    }
+    try {
+      Runtime.getRuntime()
+          .removeShutdownHook(shutdownHook);
+    } catch (final IllegalStateException e) {
+      // 終了処理中にshutdownHookから呼ばれた場合
+    }
+    SQLException failure = null;
+    lifecycle.writeLock()
+        .lock();
     try {
+      closed = true;
+      statusUpdates.put(END_OF_UPDATES);
+      flusher.join();
+      writer.shutdown();
+      writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      statements.close();
+      try (final Statement statement = connector.createStatement()) {
+        statement.execute("pragma wal_checkpoint(full)");
+      }
       connector.close();
+      for (final Reader reader : allReaders) {
+        reader.close();
+      }
+      release();
+    } catch (final InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
     } catch (final SQLException e) {
       e.printStackTrace();
-      System.exit(0);
+      failure = e;
+
+      // 失敗した場合も閉じたものとして扱い，二度目のcloseが終端を待ち続けないようにする
+      release();
+    } finally {
+      lifecycle.writeLock()
+          .unlock();
+    }
+    if (null != failure) {
+      throw new IllegalStateException("cannot close database", failure);
     }
   }
 
-  synchronized public void addPair(final int leftMethodID, final int rightMethodID) {
+  private void release() {
+    connector = null;
+    allReaders = null;
+    readers = null;
+  }
+
+  public void addPair(final int leftMethodID, final int rightMethodID) {
 
     if (leftMethodID <= 0 || rightMethodID <= 0) {
       return;
     }
 
-    try {
-      final PreparedStatement statement = this.connector.prepareStatement(
+    writeBehind(statements -> {
+      final PreparedStatement statement = statements.get(
           "insert into pairs(leftMethodID, rightMethodID) values (?, ?)");
       statement.setInt(1, leftMethodID);
       statement.setInt(2, rightMethodID);
@@ -378,13 +1202,49 @@ public class JavaMethodDAO {
           e.printStackTrace();
         }
       }
+      return null;
+    });
+  }
 
-      connector.commit();
-      statement.close();
+  /**
+   * 分類の対象となるグループを受け取る処理．
+   */
+  @FunctionalInterface
+  public interface GroupConsumer {
 
-    } catch (final SQLException e) {
-      e.printStackTrace();
+    void accept(int groupID, String signature, List<JavaMethod> methods);
+  }
+
+  /**
+   * コネクションを受け取り，問い合わせや更新を行う処理．
+   */
+  @FunctionalInterface
+  private interface Query<T> {
+
+    T execute(StatementCache statements) throws SQLException;
+  }
+
+  /**
+   * 読み出し専用のコネクションとそのPreparedStatement．自動コミットとするので，
+   * 問い合わせごとに最新のコミットまでの内容が見える．
+   */
+  private static class Reader {
+
+    private final Connection connection;
+    private final StatementCache statements;
+
+    Reader(final Path dbPath) throws SQLException {
+      final SQLiteConfig readerConfig = new SQLiteConfig();
+      readerConfig.setReadOnly(true);
+      readerConfig.setBusyTimeout(BUSY_TIMEOUT);
+      this.connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath.toAbsolutePath(),
+          readerConfig.toProperties());
+      this.statements = new StatementCache(connection);
+    }
+
+    void close() throws SQLException {
+      statements.close();
+      connection.close();
     }
   }
 }
-
@@ -0,0 +1,165 @@
+package iv.db;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import iv.data.JavaMethod;
+
+/**
+ * 抽出されたメソッドを有界キューで受け取り，単一のスレッドで一定数ずつデータベースに書き込む．
+ * キューが一杯のときは抽出側を待たせるので，メモリ上に保持されるメソッドの数はキューの容量で抑えられる．
+ */
+public class MethodWriter implements Consumer<JavaMethod> {
+
+  private static final Logger log = LoggerFactory.getLogger(MethodWriter.class);
+
+  // キューの終端を表す番兵
+  private static final JavaMethod END = new JavaMethod(null, null, (byte[]) null, null, 0, 0,
+      null, 0, 0, null, null, -1);
+
+  private final JavaMethodDAO dao;
+  private final int batchSize;
+  private final BlockingQueue<JavaMethod> queue;
+  private final Thread thread;
+
+  private long enqueued;
+  private long maxDepth;
+  private long totalDepth;
+  private long written;
+  private long batches;
+  private long writingNanos;
+
+  public MethodWriter(final JavaMethodDAO dao, final int batchSize) {
+    this.dao = dao;
+    this.batchSize = batchSize;
+    this.queue = new ArrayBlockingQueue<>(batchSize * 4);
+    this.thread = new Thread(this::drain, "method-writer");
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * メソッドを書き込みキューに追加する．キューが一杯の場合には空きができるまで待つ．
+   * 複数のスレッドから呼ばれても良い．
+   *
+   * @throws UncheckedIOException 待っている間に割り込まれた場合．メソッドはキューに追加されない
+   */
+  @Override
+  public void accept(final JavaMethod method) {
+    try {
+      put(method);
+    } catch (final InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
+      throw new UncheckedIOException(
+          new InterruptedIOException("interrupted while queueing a method"));
+    }
+    synchronized (this) {
+      final int depth = queue.size();
+      enqueued++;
+      totalDepth += depth;
+      maxDepth = Math.max(maxDepth, depth);
+    }
+  }
+
+  /**
+   * キューに残っているメソッドを全て書き込み，書き込みスレッドを終了させる．
+   * 途中で割り込まれても終端は必ずキューに追加し，書き込みスレッドの終了まで待つ．割り込みの状態は最後に復元する．
+   */
+  public void close() {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        put(END);
+        break;
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    while (true) {
+      try {
+        thread.join();
+        break;
+      } catch (final InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread()
+          .interrupt();
+    }
+  }
+
+  public synchronized String getStatistics() {
+    final double seconds = writingNanos / 1_000_000_000d;
+    final StringBuilder text = new StringBuilder();
+    text.append("written methods: ");
+    text.append(written);
+    text.append(" in ");
+    text.append(batches);
+    text.append(" batches (");
+    text.append(0 < seconds ? String.format("%.1f", written / seconds) : "-");
+    text.append(" methods/sec)");
+    text.append(System.lineSeparator());
+    text.append("queue depth: max ");
+    text.append(maxDepth);
+    text.append(", average ");
+    text.append(0 < enqueued ? String.format("%.1f", (double) totalDepth / enqueued) : "0");
+    text.append(", capacity ");
+    text.append(batchSize * 4);
+    return text.toString();
+  }
+
+  private void put(final JavaMethod method) throws InterruptedException {
+
+    // 書き込みスレッドが異常終了している場合に抽出側が永久に待たないようにする
+    while (!queue.offer(method, 1, TimeUnit.SECONDS)) {
+      if (!thread.isAlive()) {
+        throw new IllegalStateException("method writer has been terminated");
+      }
+    }
+  }
+
+  private void drain() {
+    List<JavaMethod> batch = new ArrayList<>(batchSize);
+    try {
+      while (true) {
+        final JavaMethod method = queue.take();
+        if (END == method) {
+          break;
+        }
+        batch.add(method);
+        if (batchSize <= batch.size()) {
+          write(batch);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      write(batch);
+    } catch (final InterruptedException e) {
+      log.error("method writer was interrupted");
+    }
+  }
+
+  private void write(final List<JavaMethod> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final long start = System.nanoTime();
+    dao.addMethods(batch);
+    final long elapsed = System.nanoTime() - start;
+    synchronized (this) {
+      written += batch.size();
+      batches++;
+      writingNanos += elapsed;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package iv.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一つのコネクションについて，SQL文字列ごとにPreparedStatementを保持するキャッシュ．
+ * 同じSQLを何度も実行する際に，構文解析とプランの作成をやり直さないようにする．
+ * スレッドセーフではないので，コネクションを使う側で排他制御を行う．
+ * 返したPreparedStatementは呼び出し側で閉じてはならない．閉じるのはこのキャッシュを閉じたときである．
+ */
+class StatementCache implements AutoCloseable {
+
+  private final Connection connection;
+  private final Map<String, PreparedStatement> statements;
+
+  StatementCache(final Connection connection) {
+    this.connection = connection;
+    this.statements = new HashMap<>();
+  }
+
+  /**
+   * 引数で与えられたSQLのPreparedStatementを返す．前回の呼び出しで設定された引数やバッチは消去してから返す．
+   *
+   * @param sql
+   * @return
+   * @throws SQLException
+   */
+  PreparedStatement get(final String sql) throws SQLException {
+    final PreparedStatement statement = statements.get(sql);
+    if (null != statement && !statement.isClosed()) {
+      statement.clearParameters();
+      statement.clearBatch();
+      return statement;
+    }
+    final PreparedStatement newStatement = connection.prepareStatement(sql);
+    statements.put(sql, newStatement);
+    return newStatement;
+  }
+
+  /**
+   * 保持している全てのPreparedStatementを閉じる．コネクションは閉じない．
+   */
+  @Override
+  public void close() {
+    for (final PreparedStatement statement : statements.values()) {
+      try {
+        statement.close();
+      } catch (final SQLException e) {
+        e.printStackTrace();
+      }
+    }
+    statements.clear();
+  }
+}
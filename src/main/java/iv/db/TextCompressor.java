@@ -0,0 +1,343 @@
+package iv.db;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * データベースに記録するテキスト（rtext，ntext，Target_ESTest，Target_ESTest_scaffolding）の圧縮と展開．
+ * 値ごとにDeflateで圧縮し，カラムごとの辞書（最初に書き込んだ値から作り，dictionariesテーブルに記録する）を用いる．
+ * 辞書は，複数の値にまたがって繰り返し現れる行と，最初の値の先頭からなる．値が一つしかない場合はその値の先頭が辞書となるので，
+ * EvoSuiteのscaffoldingのように値どうしがほとんど同じカラムでは，後の値の大部分は辞書への参照になる．
+ * 圧縮した値は先頭にMAGIC，辞書のID，元の長さをもつ．辞書のIDが1バイトに収まらない場合はWIDE_MAGICと4バイトのIDを用いる．
+ * どちらでも始まらない値は圧縮していない値としてそのまま返すので，圧縮を導入する前のデータベースや，圧縮しても小さくならなかった値も読める．
+ * 辞書の作成は書き込みスレッドのみが行う．圧縮と展開は複数のスレッドから行ってよく，圧縮にはコミットされた辞書のみを用いる．
+ */
+public class TextCompressor {
+
+  // テキストはUTF-8のソースコードなので，NULで始まることはない
+  private static final byte[] MAGIC = {0x00, 'Z'};
+  private static final byte[] WIDE_MAGIC = {0x00, 'W'};
+
+  // MAGIC，辞書のID（0は辞書なし），元の長さ
+  private static final int HEADER_LENGTH = MAGIC.length + 1 + Integer.BYTES;
+
+  // WIDE_MAGIC，辞書のID，元の長さ
+  private static final int WIDE_HEADER_LENGTH = WIDE_MAGIC.length + Integer.BYTES + Integer.BYTES;
+
+  // 辞書に入れる行の長さの下限．Deflateはこれより短い一致をほとんど得にしない
+  private static final int MIN_SEGMENT = 4;
+
+  // Deflateが参照できる距離の上限
+  private static final int MAX_DICTIONARY = 32 * 1024;
+
+  private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(
+      () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+  private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(
+      () -> new Inflater(true));
+
+  private final boolean enabled;
+
+  // カラム名から辞書のIDへの対応と，辞書のIDから辞書への対応
+  private final Map<String, Integer> dictionaryIDs;
+  private final Map<Integer, byte[]> dictionaries;
+
+  // 記録したがまだコミットしていない辞書のカラム名とID．コミットされるまで圧縮には用いない
+  private final Map<String, Integer> pending;
+
+  /**
+   * @param enabled falseの場合は圧縮せずにそのまま書き込む．展開は常に行う
+   */
+  public TextCompressor(final boolean enabled) {
+    this.enabled = enabled;
+    this.dictionaryIDs = new ConcurrentHashMap<>();
+    this.dictionaries = new ConcurrentHashMap<>();
+    this.pending = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * データベースに記録されている辞書を読み込む．dictionariesテーブルは作成済みでなければならない．
+   *
+   * @param connection
+   * @throws SQLException
+   */
+  public void load(final Connection connection) throws SQLException {
+    try (final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery(
+            "select id, name, content from dictionaries")) {
+      while (results.next()) {
+        final int id = results.getInt(1);
+        dictionaryIDs.put(results.getString(2), id);
+        dictionaries.put(id, results.getBytes(3));
+      }
+    }
+  }
+
+  /**
+   * カラムの辞書をtrainで作る必要があるかを返す．
+   *
+   * @param column
+   * @return
+   */
+  public boolean needsDictionary(final String column) {
+    return enabled && !dictionaryIDs.containsKey(column) && !pending.containsKey(column);
+  }
+
+  /**
+   * カラムの辞書がまだなければ，与えられた値からbuildDictionaryで辞書を作り，dictionariesテーブルに記録する．
+   * 呼び出し側のトランザクションで記録するので，呼び出し側でコミットした後にcommitを，ロールバックした後にrollbackを呼ぶ．
+   * 辞書はcommitが呼ばれるまで圧縮に用いない．
+   *
+   * @param connection
+   * @param column
+   * @param samples
+   * @throws SQLException
+   */
+  public void train(final Connection connection, final String column, final List<byte[]> samples)
+      throws SQLException {
+
+    if (!needsDictionary(column)) {
+      return;
+    }
+
+    final byte[] dictionary = buildDictionary(samples);
+    if (0 == dictionary.length) {
+      return;
+    }
+
+    try (final PreparedStatement statement = connection.prepareStatement(
+        "insert into dictionaries(name, content) values (?, ?)",
+        Statement.RETURN_GENERATED_KEYS)) {
+      statement.setString(1, column);
+      statement.setBytes(2, dictionary);
+      statement.executeUpdate();
+      try (final ResultSet keys = statement.getGeneratedKeys()) {
+        if (!keys.next()) {
+          throw new SQLException("no ID is generated for the dictionary of " + column);
+        }
+        final int id = keys.getInt(1);
+        dictionaries.put(id, dictionary);
+        pending.put(column, id);
+      }
+    }
+  }
+
+  /**
+   * 複数の値にまたがって繰り返し現れる行（改行を含む）を集めて辞書の末尾に置き，残りの先頭を値の先頭からの連結で埋める．
+   * 現れる値の数から1を引いたものと行の長さの積が大きい行ほど，圧縮で省けるバイト数が多いとみなして優先する．
+   * Deflateは辞書の末尾に近いほど短い参照で表せるので，優先する行ほど辞書の末尾に置く．
+   * 値が一つしかない場合は繰り返し現れる行がないので，その値の先頭が辞書となる．
+   *
+   * @param samples
+   * @return 辞書．値がない場合は空の配列
+   */
+  static byte[] buildDictionary(final List<byte[]> samples) {
+
+    // 行ごとに，最後に現れた値の番号と，現れた値の数を数える
+    final Map<ByteBuffer, int[]> segments = new HashMap<>();
+    int sampleCount = 0;
+    for (final byte[] sample : samples) {
+      if (null == sample) {
+        continue;
+      }
+      sampleCount++;
+      int start = 0;
+      for (int index = 0; index < sample.length; index++) {
+        if ('\n' != sample[index] && index + 1 < sample.length) {
+          continue;
+        }
+        if (MIN_SEGMENT <= index + 1 - start) {
+          final int[] counts = segments.computeIfAbsent(
+              ByteBuffer.wrap(sample, start, index + 1 - start), key -> new int[2]);
+          if (counts[0] != sampleCount) {
+            counts[0] = sampleCount;
+            counts[1]++;
+          }
+        }
+        start = index + 1;
+      }
+    }
+
+    final List<Map.Entry<ByteBuffer, int[]>> recurring = new ArrayList<>();
+    for (final Map.Entry<ByteBuffer, int[]> entry : segments.entrySet()) {
+      if (1 < entry.getValue()[1]) {
+        recurring.add(entry);
+      }
+    }
+    recurring.sort(Comparator.comparingLong(
+        (final Map.Entry<ByteBuffer, int[]> entry) -> -(long) (entry.getValue()[1] - 1)
+            * entry.getKey()
+                .remaining()));
+    int tailSize = 0;
+    int selected = 0;
+    while (selected < recurring.size() && tailSize + recurring.get(selected)
+        .getKey()
+        .remaining() <= MAX_DICTIONARY) {
+      tailSize += recurring.get(selected)
+          .getKey()
+          .remaining();
+      selected++;
+    }
+
+    // 繰り返し現れる行で埋まらなかった先頭には，値を先頭から連結したものを入れる
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(MAX_DICTIONARY);
+    for (final byte[] sample : samples) {
+      if (null == sample) {
+        continue;
+      }
+      final int length = Math.min(sample.length, MAX_DICTIONARY - tailSize - buffer.size());
+      buffer.write(sample, 0, length);
+      if (MAX_DICTIONARY <= tailSize + buffer.size()) {
+        break;
+      }
+    }
+    for (int index = selected - 1; 0 <= index; index--) {
+      final ByteBuffer segment = recurring.get(index)
+          .getKey();
+      buffer.write(segment.array(), segment.arrayOffset() + segment.position(),
+          segment.remaining());
+    }
+    return buffer.toByteArray();
+  }
+
+  /**
+   * trainで記録した辞書がコミットされたことを知らせる．その辞書を以降の圧縮に用いる．
+   */
+  public void commit() {
+    for (final Map.Entry<String, Integer> entry : pending.entrySet()) {
+      dictionaryIDs.put(entry.getKey(), entry.getValue());
+    }
+    pending.clear();
+  }
+
+  /**
+   * trainで記録した辞書がロールバックされたことを知らせる．その辞書は以降の圧縮に用いない．
+   */
+  public void rollback() {
+    for (final Integer id : pending.values()) {
+      dictionaries.remove(id);
+    }
+    pending.clear();
+  }
+
+  /**
+   * カラムの辞書を用いてテキストを圧縮する．圧縮しない設定の場合や，圧縮しても小さくならない場合はそのまま返す．
+   *
+   * @param column
+   * @param text
+   * @return
+   */
+  public byte[] compress(final String column, final byte[] text) {
+
+    final Integer id = enabled ? dictionaryIDs.get(column) : null;
+    final boolean isWide = null != id && Byte.MAX_VALUE < id;
+    final int headerLength = isWide ? WIDE_HEADER_LENGTH : HEADER_LENGTH;
+    if (!enabled || null == text || text.length <= headerLength) {
+      return text;
+    }
+
+    final Deflater deflater = DEFLATERS.get();
+    deflater.reset();
+    if (null != id) {
+      deflater.setDictionary(dictionaries.get(id));
+    }
+    deflater.setInput(text);
+    deflater.finish();
+
+    // 元の長さ以上になる場合は圧縮しない
+    final byte[] compressed = new byte[text.length];
+    final ByteBuffer header = ByteBuffer.wrap(compressed, 0, headerLength);
+    if (isWide) {
+      header.put(WIDE_MAGIC)
+          .putInt(id);
+    } else {
+      header.put(MAGIC)
+          .put(null != id ? id.byteValue() : 0);
+    }
+    header.putInt(text.length);
+    int length = headerLength;
+    while (!deflater.finished() && length < compressed.length) {
+      length += deflater.deflate(compressed, length, compressed.length - length);
+    }
+    if (!deflater.finished()) {
+      return text;
+    }
+    return Arrays.copyOf(compressed, length);
+  }
+
+  /**
+   * compressで圧縮した値を展開する．圧縮していない値はそのまま返す．
+   *
+   * @param stored
+   * @return
+   * @throws SQLException 辞書が見つからない場合や，値が壊れている場合
+   */
+  public byte[] decompress(final byte[] stored) throws SQLException {
+
+    if (!isCompressed(stored)) {
+      return stored;
+    }
+
+    final boolean isWide = WIDE_MAGIC[1] == stored[1];
+    final int headerLength = isWide ? WIDE_HEADER_LENGTH : HEADER_LENGTH;
+    final ByteBuffer header = ByteBuffer.wrap(stored, MAGIC.length, headerLength - MAGIC.length);
+    final int id = isWide ? header.getInt() : header.get();
+    final int length = header.getInt();
+    final Inflater inflater = INFLATERS.get();
+    inflater.reset();
+    if (0 != id) {
+      final byte[] dictionary = dictionaries.get(id);
+      if (null == dictionary) {
+        throw new SQLException("no such dictionary: " + id);
+      }
+      inflater.setDictionary(dictionary);
+    }
+    inflater.setInput(stored, headerLength, stored.length - headerLength);
+
+    final byte[] text = new byte[length];
+    try {
+      int offset = 0;
+      while (offset < length && !inflater.finished()) {
+        final int inflated = inflater.inflate(text, offset, length - offset);
+        if (0 == inflated && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        offset += inflated;
+      }
+      if (offset != length) {
+        throw new SQLException("broken compressed text: " + offset + " of " + length + " bytes");
+      }
+    } catch (final DataFormatException e) {
+      throw new SQLException("broken compressed text", e);
+    }
+    return text;
+  }
+
+  /**
+   * 与えられた値がcompressで圧縮したものかを返す．
+   *
+   * @param stored
+   * @return
+   */
+  public static boolean isCompressed(final byte[] stored) {
+    if (null == stored || stored.length <= HEADER_LENGTH || MAGIC[0] != stored[0]) {
+      return false;
+    }
+    return MAGIC[1] == stored[1]
+        || (WIDE_MAGIC[1] == stored[1] && WIDE_HEADER_LENGTH < stored.length);
+  }
+}
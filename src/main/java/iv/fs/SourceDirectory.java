@@ -0,0 +1,217 @@
+package iv.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import iv.IVConfig;
+import iv.ast.JavaMethodExtractor;
+import iv.data.JavaMethod;
+import iv.data.SourceScreen;
+
+/**
+ * ファイルシステム上のディレクトリ（もしくはファイル）からメソッドを抽出する．
+ * ファイルの列挙はFiles.walkFileTreeで行い，構文解析はワークスティーリングを行うスレッドプールで並列に行う．
+ */
+public class SourceDirectory {
+
+  private static final Logger log = LoggerFactory.getLogger(SourceDirectory.class);
+
+  // これ以上の大きさのファイルはメモリマップして読み込む
+  private static final long MAPPING_THRESHOLD = 64 * 1024;
+
+  // 一つのタスクでこれ以下の数のファイルを処理する場合は，それ以上分割しない
+  // 一括構文解析の場合は，この数のファイルを一度に構文解析することになる
+  private static final int SPLITTING_THRESHOLD = 32;
+
+  private final IVConfig config;
+  private final Path root;
+  private final LongAdder largeFiles;
+  private SourceScreen screen;
+
+  public SourceDirectory(final IVConfig config, final Path root) {
+    log.trace("enter SourceDirectory(IVConfig, Path)");
+    this.config = config;
+    this.root = root;
+    this.largeFiles = new LongAdder();
+  }
+
+  /**
+   * テストおよびトイのファイルを読み込む前に除外するためのSourceScreenを設定する．nullの場合は除外しない．
+   *
+   * @param screen
+   */
+  public void setSourceScreen(final SourceScreen screen) {
+    this.screen = screen;
+  }
+
+  /**
+   * ディレクトリ内の全てのJavaファイルからメソッドを抽出し，consumerに渡す．
+   * consumerは複数のスレッドから呼ばれる．
+   *
+   * @param consumer
+   */
+  public void extractJavaMethods(final Consumer<JavaMethod> consumer) {
+    final List<Path> files = getJavaFiles();
+    final JavaMethodExtractor extractor = new JavaMethodExtractor(config, null, null);
+    final ForkJoinPool pool = new ForkJoinPool(Math.max(1, config.getThreads()));
+    final long start = System.nanoTime();
+    try {
+      pool.invoke(new ExtractionTask(files, 0, files.size(), extractor, consumer));
+    } finally {
+      pool.shutdown();
+    }
+    final double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+    System.out.println("total method count: " + extractor.getTotalMethodCount());
+    if (config.isSignatureScreening()) {
+      System.out.println("screened files: " + extractor.getScreenedFileCount());
+    }
+    System.out.println(
+        "parsed files: " + files.size() + " (" + String.format("%.1f", files.size() / seconds)
+            + " files/sec)");
+    if (0 < largeFiles.sum()) {
+      System.out.println("skipped large files: " + largeFiles.sum());
+    }
+  }
+
+  private List<Path> getJavaFiles() {
+    final List<Path> files = new ArrayList<>();
+    final long maxFileSize = config.getMaxFileSize();
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<>() {
+
+        // テストやトイのディレクトリは，中のファイルを列挙せずに飛ばす
+        @Override
+        public FileVisitResult preVisitDirectory(final Path directory,
+            final BasicFileAttributes attributes) {
+          final Path name = directory.getFileName();
+          if (null != screen && null != name && !directory.equals(root) && !screen
+              .acceptDirectory(name.toString())) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+          final String path = file.toString();
+          if (!attributes.isRegularFile() || !path.endsWith(".java")) {
+            return FileVisitResult.CONTINUE;
+          }
+          if (null != screen && !screen.accept(path)) {
+            return FileVisitResult.CONTINUE;
+          }
+          if (maxFileSize < attributes.size()) {
+            largeFiles.increment();
+            return FileVisitResult.CONTINUE;
+          }
+          files.add(file);
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+          System.err.println(e.getMessage());
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (final IOException e) {
+      System.err.println(e.getMessage());
+    }
+    return files;
+  }
+
+  /**
+   * ファイルをUTF-8として読み込み，char配列に直接デコードする．大きなファイルはメモリマップして読み込む．
+   * 不正なバイト列は置換文字に置き換える．
+   */
+  static char[] read(final Path file) throws IOException {
+    try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      final ByteBuffer bytes;
+      if (MAPPING_THRESHOLD <= size) {
+        bytes = channel.map(MapMode.READ_ONLY, 0, size);
+      } else {
+        bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && 0 <= channel.read(bytes)) {
+        }
+        bytes.flip();
+      }
+      final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      final CharBuffer chars = decoder.decode(bytes);
+      final char[] array = chars.array();
+      return array.length == chars.remaining() ? array : Arrays.copyOf(array, chars.remaining());
+    }
+  }
+
+  private class ExtractionTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private final List<Path> files;
+    private final int from;
+    private final int to;
+    private final JavaMethodExtractor extractor;
+    private final Consumer<JavaMethod> consumer;
+
+    ExtractionTask(final List<Path> files, final int from, final int to,
+        final JavaMethodExtractor extractor, final Consumer<JavaMethod> consumer) {
+      this.files = files;
+      this.from = from;
+      this.to = to;
+      this.extractor = extractor;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= SPLITTING_THRESHOLD) {
+
+        // 一括構文解析の場合は，このタスクのファイルをJDTの一度の呼び出しで構文解析する
+        if (config.isBatchParse()) {
+          final List<String> paths = files.subList(from, to)
+              .stream()
+              .map(Path::toString)
+              .collect(Collectors.toList());
+          extractor.extractJavaMethods(paths, consumer);
+          return;
+        }
+
+        for (int index = from; index < to; index++) {
+          final Path file = files.get(index);
+          try {
+            extractor.getJavaMethods(file.toString(), read(file))
+                .forEach(consumer);
+          } catch (final IOException e) {
+            System.err.println(e.getMessage());
+          }
+        }
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(new ExtractionTask(files, from, middle, extractor, consumer),
+          new ExtractionTask(files, middle, to, extractor, consumer));
+    }
+  }
+}
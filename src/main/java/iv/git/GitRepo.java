@@ -1,10 +1,30 @@
 package iv.git;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
 import org.eclipse.jgit.errors.AmbiguousObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
@@ -14,27 +34,46 @@ import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import iv.IVConfig;
 import iv.ast.JavaMethodExtractor;
 import iv.data.JavaMethod;
+import iv.data.SourceScreen;
+import iv.db.BlobCache;
 
 public class GitRepo {
 
   private static final Logger log = LoggerFactory.getLogger(GitRepo.class);
   public final IVConfig config;
   private FileRepository repository;
+  private BlobCache blobCache;
+  private SourceScreen screen;
+  private int threads;
+
+  // 大きすぎるために解析しなかったファイルの数．extractJavaMethodsの呼び出しごとに数え直す
+  private final LongAdder largeFiles = new LongAdder();
+
+  // 履歴を登録する際に保持する，最近抽出したブロブごとのメソッドの数の上限
+  private static final int MAX_RECENT_BLOBS = 4096;
+
+  // 履歴を登録する際に，最近抽出したブロブごとのメソッド．古いものから捨てる
+  private Map<ObjectId, List<JavaMethod>> recentBlobs;
 
   public GitRepo(final IVConfig config) {
     log.trace("enter GitRepo(JMCConfig)");
 
     this.config = config;
+    this.threads = config.getThreads();
     final Path repoPath = config.getRepoPath();
     try {
       this.repository = new FileRepository(repoPath.resolve(".git")
@@ -46,6 +85,52 @@ public class GitRepo {
     }
   }
 
+  /**
+   * 設定とは別に指定されたリポジトリを開く．リポジトリにアクセスできない場合は例外を投げる．
+   *
+   * @param config
+   * @param repoPath
+   * @throws IOException
+   */
+  public GitRepo(final IVConfig config, final Path repoPath) throws IOException {
+    log.trace("enter GitRepo(JMCConfig, Path)");
+
+    this.config = config;
+    this.threads = config.getThreads();
+    if (!Files.isDirectory(repoPath.resolve(".git"))) {
+      throw new IOException("not a git repository: " + repoPath);
+    }
+    this.repository = new FileRepository(repoPath.resolve(".git")
+        .toString());
+  }
+
+  /**
+   * テストおよびトイのファイルを読み込む前に除外するためのSourceScreenを設定する．nullの場合は除外しない．
+   *
+   * @param screen
+   */
+  public void setSourceScreen(final SourceScreen screen) {
+    this.screen = screen;
+  }
+
+  /**
+   * 構文解析に用いるスレッド数を設定する．
+   *
+   * @param threads
+   */
+  public void setThreads(final int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * 内容が同じファイルの構文解析を省略するためのキャッシュを設定する．nullの場合はキャッシュを使わない．
+   *
+   * @param blobCache
+   */
+  public void setBlobCache(final BlobCache blobCache) {
+    this.blobCache = blobCache;
+  }
+
   /**
    * 引数で与えられたコミットハッシュの最初の7文字を返す
    *
@@ -57,6 +142,10 @@ public class GitRepo {
         .name();
   }
 
+  public void close() {
+    repository.close();
+  }
+
   public RevCommit getHeadCommit() {
     log.trace("enter getHeadCommit()");
     return this.getCommit(Constants.HEAD);
@@ -120,30 +209,476 @@ public class GitRepo {
 
   public List<JavaMethod> getJavaMethods(final RevCommit commit) {
     final List<JavaMethod> javaMethods = new ArrayList<>();
-    final String remoteUrl = repository.getConfig()
-        .getString("remote", "origin", "url");
-    final JavaMethodExtractor extractor = new JavaMethodExtractor(this.config, remoteUrl, commit);
-    final RevTree tree = commit.getTree();
-    final TreeWalk walker = new TreeWalk(repository);
-    try {
-      walker.addTree(tree);
+    extractJavaMethods(commit, javaMethods::add);
+    return javaMethods;
+  }
+
+  /**
+   * 引数で与えられたコミットに含まれるメソッドを抽出し，抽出した順にconsumerに渡す．
+   * 抽出したメソッドを保持し続けないので，リポジトリの大きさによらず使用メモリは一定となる．
+   *
+   * @param commit
+   * @param consumer
+   * @return 全てのファイルを解析し終えた場合はtrue．途中で失敗もしくは中断した場合はfalse
+   */
+  public boolean extractJavaMethods(final RevCommit commit, final Consumer<JavaMethod> consumer) {
+    return extractJavaMethods(null, commit, consumer);
+  }
+
+  /**
+   * oldCommitからcommitまでの間に追加もしくは変更されたファイルに含まれるメソッドのみを抽出する．
+   * oldCommitがnullの場合はcommitに含まれる全てのファイルが対象となる．
+   *
+   * @param oldCommit
+   * @param commit
+   * @param consumer
+   * @return 全てのファイルを解析し終えた場合はtrue．途中で失敗もしくは中断した場合はfalse
+   */
+  public boolean extractJavaMethods(final RevCommit oldCommit, final RevCommit commit,
+      final Consumer<JavaMethod> consumer) {
+    boolean completed = true;
+    final JavaMethodExtractor extractor = new JavaMethodExtractor(this.config, getRemoteUrl(),
+        commit);
+    largeFiles.reset();
+    try (final TreeWalk walker = new TreeWalk(repository)) {
+      final TreeFilter fileFilter = null != screen ? new ScreeningTreeFilter(screen)
+          : PathSuffixFilter.create(".java");
+      if (null == oldCommit) {
+        walker.addTree(commit.getTree());
+        walker.setFilter(fileFilter);
+      } else {
+        walker.addTree(oldCommit.getTree());
+        walker.addTree(commit.getTree());
+        walker.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, fileFilter));
+      }
       walker.setRecursive(true);
-      walker.setFilter(PathSuffixFilter.create(".java"));
-      while (walker.next()) {
-        final String path = walker.getPathString();
-        final ObjectId blobId = walker.getObjectId(0);
-        try (final ObjectReader objectReader = repository.newObjectReader()) {
-          final ObjectLoader objectLoader = objectReader.open(blobId);
-          final byte[] bytes = objectLoader.getBytes();
-          final String text = new String(bytes, StandardCharsets.UTF_8);
-          final List<JavaMethod> methods = extractor.getJavaMethods(path, text);
-          javaMethods.addAll(methods);
+      completed = extract(new TreeWalkBlobs(walker), extractor, consumer);
+    } catch (final IOException e) {
+      e.printStackTrace();
+      completed = false;
+    }
+    printStatistics(extractor);
+    return completed;
+  }
+
+  /**
+   * 直前に登録したコミットからの差分のみを走査して，commitに含まれる全てのメソッドを抽出する．
+   * filesには直前のコミットに含まれるファイルのパスとブロブIDを渡し，commitのものに更新する．
+   * 変更されていないファイルはブロブIDのみを引き継ぎ，そのメソッドは最近抽出したものかキャッシュから再利用する．
+   *
+   * @param previousCommit 直前に登録したコミット．nullの場合は全てのファイルが追加されたものとする
+   * @param commit
+   * @param files
+   * @param consumer
+   * @return 全てのファイルを解析し終えた場合はtrue．途中で失敗もしくは中断した場合はfalse
+   */
+  private boolean extractJavaMethods(final RevCommit previousCommit, final RevCommit commit,
+      final Map<String, ObjectId> files, final Consumer<JavaMethod> consumer) {
+    boolean completed = true;
+    final JavaMethodExtractor extractor = new JavaMethodExtractor(this.config, getRemoteUrl(),
+        commit);
+    largeFiles.reset();
+    try (final TreeWalk walker = new TreeWalk(repository)) {
+      final TreeFilter fileFilter = null != screen ? new ScreeningTreeFilter(screen)
+          : PathSuffixFilter.create(".java");
+      if (null == previousCommit) {
+        walker.addTree(new EmptyTreeIterator());
+      } else {
+        walker.addTree(previousCommit.getTree());
+      }
+      walker.addTree(commit.getTree());
+      walker.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, fileFilter));
+      walker.setRecursive(true);
+      for (final DiffEntry entry : DiffEntry.scan(walker)) {
+        if (ChangeType.DELETE == entry.getChangeType()) {
+          files.remove(entry.getOldPath());
+        } else {
+          files.put(entry.getNewPath(), entry.getNewId()
+              .toObjectId());
         }
       }
-    } catch (IOException e) {
+      completed = extract(new MapBlobs(files), extractor, consumer);
+    } catch (final IOException e) {
       e.printStackTrace();
+      completed = false;
     }
+    printStatistics(extractor);
+    return completed;
+  }
+
+  private boolean extract(final Blobs blobs, final JavaMethodExtractor extractor,
+      final Consumer<JavaMethod> consumer) throws IOException {
+    final int failures = threads <= 1 ? extractSerially(blobs, extractor, consumer)
+        : extractInParallel(blobs, extractor, threads, consumer);
+    if (0 < failures) {
+      System.err.println("failed files: " + failures);
+      return false;
+    }
+    return true;
+  }
+
+  private void printStatistics(final JavaMethodExtractor extractor) {
     System.out.println("total method count: " + extractor.getTotalMethodCount());
-    return javaMethods;
+    if (0 < extractor.getReusedFileCount()) {
+      System.out.println("reused files: " + extractor.getReusedFileCount() + " ("
+          + extractor.getReusedMethodCount() + " methods)");
+    }
+    if (config.isSignatureScreening()) {
+      System.out.println("screened files: " + extractor.getScreenedFileCount());
+    }
+    if (0 < largeFiles.sum()) {
+      System.out.println("skipped large files: " + largeFiles.sum());
+    }
+  }
+
+  /**
+   * 引数で与えられたコミット列を順に登録する．各コミットでは直前のコミットからの差分のみを走査する．
+   * 変更されていないブロブは構文解析せず，最近抽出したメソッドもしくはキャッシュのメソッドのリビジョン等を置き換えて再利用する．
+   * 最近抽出したメソッドは一定数のブロブの分だけ保持するので，コミット全体のメソッドを保持し続けることはない．
+   *
+   * @param commits 古いものから順に並んだコミット列
+   * @param consumer
+   * @return 全てのコミットを解析し終えた場合はtrue．途中で失敗もしくは中断した場合はfalse
+   */
+  public boolean extractJavaMethods(final List<RevCommit> commits,
+      final Consumer<JavaMethod> consumer) {
+    boolean completed = true;
+    recentBlobs = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<ObjectId, List<JavaMethod>> eldest) {
+        return MAX_RECENT_BLOBS < size();
+      }
+    });
+    final Map<String, ObjectId> files = new TreeMap<>();
+    RevCommit previousCommit = null;
+    for (int index = 0; index < commits.size(); index++) {
+      final RevCommit commit = commits.get(index);
+      System.out.println("[" + (index + 1) + "/" + commits.size() + "] " + getAbbreviatedID(commit));
+      completed &= extractJavaMethods(previousCommit, commit, files, consumer);
+      previousCommit = commit;
+
+      // 中断された場合は残りのコミットを解析しない
+      if (Thread.currentThread()
+          .isInterrupted()) {
+        completed = false;
+        break;
+      }
+    }
+    recentBlobs = null;
+    return completed;
+  }
+
+  /**
+   * 引数で与えられたコミットから第一親をたどった履歴のうち，登録対象のコミットを古い順に返す．
+   *
+   * @param tip 履歴の先端のコミット
+   * @param step 何コミットごとに登録するか
+   * @param tagsOnly trueの場合はタグが付けられたコミットのみを返す
+   * @return
+   */
+  public List<RevCommit> getHistory(final RevCommit tip, final int step, final boolean tagsOnly) {
+    final List<RevCommit> history = new ArrayList<>();
+    try (final RevWalk revWalk = new RevWalk(this.repository)) {
+      RevCommit commit = revWalk.parseCommit(tip);
+      while (true) {
+        history.add(commit);
+        if (0 == commit.getParentCount()) {
+          break;
+        }
+        commit = revWalk.parseCommit(commit.getParent(0));
+      }
+    } catch (final IOException e) {
+      log.error("cannot walk history from \"{}\"", getAbbreviatedID(tip));
+      log.error(e.getMessage());
+    }
+    Collections.reverse(history);
+
+    final Set<ObjectId> taggedCommits = tagsOnly ? getTaggedCommits() : null;
+    final List<RevCommit> commits = new ArrayList<>();
+    for (int index = 0; index < history.size(); index++) {
+      final RevCommit commit = history.get(index);
+      if (tagsOnly ? taggedCommits.contains(commit) : 0 == index % step) {
+        commits.add(commit);
+      }
+    }
+    return commits;
+  }
+
+  private Set<ObjectId> getTaggedCommits() {
+    final Set<ObjectId> commits = new HashSet<>();
+    try {
+      final RefDatabase refDatabase = this.repository.getRefDatabase();
+      for (final Ref ref : refDatabase.getRefsByPrefix(Constants.R_TAGS)) {
+        final Ref peeledRef = refDatabase.peel(ref);
+        final ObjectId objectId = null != peeledRef.getPeeledObjectId()
+            ? peeledRef.getPeeledObjectId() : peeledRef.getObjectId();
+        commits.add(objectId);
+      }
+    } catch (final IOException e) {
+      log.error("cannot read tags");
+      log.error(e.getMessage());
+    }
+    return commits;
+  }
+
+  /**
+   * oldCommitからcommitまでの間に削除もしくは変更されたJavaファイルのパスを返す．
+   * これらのファイルについてoldCommitの時点で登録したメソッドは，もう最新ではない．
+   *
+   * @param oldCommit
+   * @param commit
+   * @return
+   */
+  public List<String> getStaleJavaFiles(final RevCommit oldCommit, final RevCommit commit) {
+    final List<String> paths = new ArrayList<>();
+    try (final TreeWalk walker = new TreeWalk(repository)) {
+      walker.addTree(oldCommit.getTree());
+      walker.addTree(commit.getTree());
+      walker.setRecursive(true);
+      walker.setFilter(AndTreeFilter.create(PathSuffixFilter.create(".java"), TreeFilter.ANY_DIFF));
+      for (final DiffEntry entry : DiffEntry.scan(walker)) {
+        if (ChangeType.DELETE == entry.getChangeType()
+            || ChangeType.MODIFY == entry.getChangeType()) {
+          paths.add(entry.getOldPath());
+        }
+      }
+    } catch (final IOException e) {
+      e.printStackTrace();
+    }
+    return paths;
+  }
+
+  public String getRemoteUrl() {
+    return repository.getConfig()
+        .getString("remote", "origin", "url");
+  }
+
+  /**
+   * ブロブの読み込みと構文解析を逐次に行う．読み込めなかったブロブがあっても残りのブロブの解析は続ける．
+   *
+   * @return 読み込めなかったブロブの数
+   */
+  private int extractSerially(final Blobs blobs, final JavaMethodExtractor extractor,
+      final Consumer<JavaMethod> consumer) throws IOException {
+    int failures = 0;
+    try (final ObjectReader objectReader = repository.newObjectReader()) {
+      while (blobs.next()) {
+        final String path = blobs.getPath();
+        final ObjectId blobId = blobs.getBlobId();
+        try {
+          extract(objectReader, extractor, path, blobId).forEach(consumer);
+        } catch (final IOException e) {
+          e.printStackTrace();
+          failures++;
+        }
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * ブロブの読み込みと構文解析をスレッドプールで並列に行う．
+   * 処理中のブロブの数はスレッド数の定数倍に制限し，結果はブロブを列挙した順に回収する．
+   *
+   * @return 読み込めなかったブロブの数
+   */
+  private int extractInParallel(final Blobs blobs, final JavaMethodExtractor extractor,
+      final int threads, final Consumer<JavaMethod> consumer) throws IOException {
+
+    // ObjectReaderはスレッドセーフではないので，ワーカースレッドごとに用意する
+    final List<ObjectReader> objectReaders = Collections.synchronizedList(new ArrayList<>());
+    final ThreadLocal<ObjectReader> threadLocalReader = ThreadLocal.withInitial(() -> {
+      final ObjectReader objectReader = repository.newObjectReader();
+      objectReaders.add(objectReader);
+      return objectReader;
+    });
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    final Deque<Future<List<JavaMethod>>> window = new ArrayDeque<>();
+    final int windowSize = threads * 4;
+    int failures = 0;
+    try {
+      while (blobs.next()) {
+        final String path = blobs.getPath();
+        final ObjectId blobId = blobs.getBlobId();
+        window.add(executorService.submit(
+            () -> extract(threadLocalReader.get(), extractor, path, blobId)));
+        if (windowSize <= window.size()) {
+          failures += consume(await(window.poll()), consumer);
+        }
+      }
+      while (!window.isEmpty()) {
+        failures += consume(await(window.poll()), consumer);
+      }
+      return failures;
+    } finally {
+      executorService.shutdownNow();
+      synchronized (objectReaders) {
+        objectReaders.forEach(ObjectReader::close);
+      }
+    }
+  }
+
+  /**
+   * TreeWalkの最後の木における現在のブロブIDを返す．そのファイルが最後の木に存在しない（削除された）場合はnullを返す．
+   */
+  private ObjectId getBlobId(final TreeWalk walker) {
+    final ObjectId blobId = walker.getObjectId(walker.getTreeCount() - 1);
+    return ObjectId.zeroId()
+        .equals(blobId) ? null : blobId;
+  }
+
+  // 解析結果をconsumerに渡す．解析に失敗していた場合は1を返す
+  private int consume(final List<JavaMethod> methods, final Consumer<JavaMethod> consumer) {
+    if (null == methods) {
+      return 1;
+    }
+    methods.forEach(consumer);
+    return 0;
+  }
+
+  /**
+   * ブロブの解析結果を待つ．待っている間に中断された場合は，残りのブロブを解析せずに終わるために例外を投げる．
+   *
+   * @param future
+   * @return 解析結果．解析に失敗した場合はnull
+   * @throws InterruptedIOException
+   */
+  private List<JavaMethod> await(final Future<List<JavaMethod>> future)
+      throws InterruptedIOException {
+    try {
+      return future.get();
+    } catch (final ExecutionException e) {
+      e.getCause()
+          .printStackTrace();
+      return null;
+    } catch (final InterruptedException e) {
+      Thread.currentThread()
+          .interrupt();
+      throw new InterruptedIOException("interrupted while extracting methods");
+    }
+  }
+
+  private List<JavaMethod> extract(final ObjectReader objectReader,
+      final JavaMethodExtractor extractor, final String path, final ObjectId blobId)
+      throws IOException {
+
+    // 同じ内容のファイルを解析済みであれば，そのときのメソッドのパス等のみを置き換えて返す
+    List<JavaMethod> reusableMethods = null;
+    if (null != recentBlobs) {
+      reusableMethods = recentBlobs.get(blobId);
+    }
+    if (null == reusableMethods && null != blobCache) {
+      reusableMethods = blobCache.get(blobId.name());
+      if (null != reusableMethods && null != recentBlobs) {
+        recentBlobs.put(blobId, reusableMethods);
+      }
+    }
+    if (null != reusableMethods) {
+      extractor.addReusedFile(reusableMethods.size());
+      final String remoteUrl = extractor.getRemoteUrl();
+      final String revision = extractor.getRevision();
+      return reusableMethods.stream()
+          .map(m -> m.relocate(path, remoteUrl, revision))
+          .collect(Collectors.toList());
+    }
+
+    final ObjectLoader objectLoader = objectReader.open(blobId);
+    if (this.config.getMaxFileSize() < objectLoader.getSize()) {
+      largeFiles.increment();
+      return Collections.emptyList();
+    }
+    final byte[] bytes = objectLoader.getBytes();
+    final String text = new String(bytes, StandardCharsets.UTF_8);
+    final List<JavaMethod> methods = extractor.getJavaMethods(path, text);
+    if (null != blobCache) {
+      blobCache.put(blobId.name(), methods);
+    }
+    if (null != recentBlobs) {
+      recentBlobs.put(blobId, methods);
+    }
+    return methods;
+  }
+
+  /**
+   * 解析するファイルのパスとブロブIDを順に列挙する．
+   */
+  private interface Blobs {
+
+    boolean next() throws IOException;
+
+    String getPath();
+
+    ObjectId getBlobId();
+  }
+
+  /**
+   * TreeWalkの最後の木に存在するファイルを列挙する．
+   */
+  private class TreeWalkBlobs implements Blobs {
+
+    private final TreeWalk walker;
+    private ObjectId blobId;
+
+    TreeWalkBlobs(final TreeWalk walker) {
+      this.walker = walker;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      while (walker.next()) {
+        blobId = GitRepo.this.getBlobId(walker);
+        if (null != blobId) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public String getPath() {
+      return walker.getPathString();
+    }
+
+    @Override
+    public ObjectId getBlobId() {
+      return blobId;
+    }
+  }
+
+  /**
+   * パスとブロブIDの対応に含まれるファイルを列挙する．
+   */
+  private static class MapBlobs implements Blobs {
+
+    private final Iterator<Map.Entry<String, ObjectId>> iterator;
+    private Map.Entry<String, ObjectId> entry;
+
+    MapBlobs(final Map<String, ObjectId> files) {
+      this.iterator = files.entrySet()
+          .iterator();
+    }
+
+    @Override
+    public boolean next() {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      entry = iterator.next();
+      return true;
+    }
+
+    @Override
+    public String getPath() {
+      return entry.getKey();
+    }
+
+    @Override
+    public ObjectId getBlobId() {
+      return entry.getValue();
+    }
   }
 }
@@ -0,0 +1,43 @@
+package iv.git;
+
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import iv.data.SourceScreen;
+
+/**
+ * Javaファイルのうち，SourceScreenが解析の必要ありと判定したものだけを通すTreeFilter．
+ * 除外されたファイルのブロブは読み込まれない．テストやトイのディレクトリは，その木自体を走査しない．
+ */
+public class ScreeningTreeFilter extends TreeFilter {
+
+  private final SourceScreen screen;
+
+  public ScreeningTreeFilter(final SourceScreen screen) {
+    this.screen = screen;
+  }
+
+  @Override
+  public boolean include(final TreeWalk walker) {
+    if (walker.isSubtree()) {
+      return screen.acceptDirectory(walker.getNameString());
+    }
+    final String path = walker.getPathString();
+    return path.endsWith(".java") && screen.accept(path);
+  }
+
+  @Override
+  public boolean shouldBeRecursive() {
+    return false;
+  }
+
+  @Override
+  public TreeFilter clone() {
+    // 除外したファイルの数は全てのTreeWalkで共有する
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "SCREENING";
+  }
+}
@@ -0,0 +1,42 @@
+package iv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassifierTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void test_getGroupID() {
+    assertThat(Classifier.getGroupID(Classifier.getGroupDirName(12, "int (int, int)"))).isEqualTo(
+        12);
+    assertThat(Classifier.getGroupID("2147483647.int(int)")).isEqualTo(Integer.MAX_VALUE);
+
+    // グループID.シグネチャの形でない名前は-1となる
+    assertThat(Classifier.getGroupID("results")).isEqualTo(-1);
+    assertThat(Classifier.getGroupID(".int(int)")).isEqualTo(-1);
+    assertThat(Classifier.getGroupID("-1.int(int)")).isEqualTo(-1);
+    assertThat(Classifier.getGroupID("1a.int(int)")).isEqualTo(-1);
+    assertThat(Classifier.getGroupID("2147483648.int(int)")).isEqualTo(-1);
+  }
+
+  @Test
+  public void test_getGroupDirs() throws Exception {
+    final Path root = folder.getRoot()
+        .toPath();
+    final Path group = Files.createDirectory(root.resolve("3.int(int)"));
+    Files.createDirectory(root.resolve("results"));
+    Files.createFile(root.resolve("4.int(int)"));
+
+    final Map<Integer, Path> groupDirs = Classifier.getGroupDirs(root);
+    assertThat(groupDirs).containsOnlyKeys(3)
+        .containsEntry(3, group);
+  }
+}
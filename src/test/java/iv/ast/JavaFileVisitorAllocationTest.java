@@ -0,0 +1,97 @@
+package iv.ast;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.when;
+import java.lang.management.ManagementFactory;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+import org.mockito.Mockito;
+import iv.IVConfig;
+import iv.JavaVersion;
+
+/**
+ * JavaFileVisitorが1メソッドあたりに確保するメモリ量が増えていないかを確認する．
+ * 構文解析は計測の対象外とし，ASTの訪問のみを計測する．訪問してもASTは書き換えられないので，同じASTを繰り返し訪問する．
+ */
+public class JavaFileVisitorAllocationTest {
+
+  private static final int METHODS = 200;
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int MEASURED_ROUNDS = 20;
+
+  // 1メソッドあたりに確保してよいバイト数の上限
+  // JDK 17で計測した値（11.1〜11.3KB）の約1.25倍にしている．
+  // ASTを書き換えてtoStringしていた頃の値（15.0〜15.3KB）に戻った場合には失敗する
+  private static final long MAX_BYTES_PER_METHOD = 14 * 1024;
+
+  @Test
+  public void test_allocatedBytesPerMethod() {
+    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+
+    final IVConfig config = Mockito.mock(IVConfig.class);
+    when(config.getJavaVersion()).thenReturn(JavaVersion.V1_16);
+    final RevCommit commit = Mockito.mock(RevCommit.class);
+    when(commit.getName()).thenReturn("commit1");
+
+    final CompilationUnit ast = parse();
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      visit(config, commit, ast);
+    }
+
+    final long threadId = Thread.currentThread()
+        .getId();
+    long methods = 0;
+    final long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int round = 0; round < MEASURED_ROUNDS; round++) {
+      methods += visit(config, commit, ast);
+    }
+    final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+    assertThat(methods).isEqualTo((long) METHODS * MEASURED_ROUNDS);
+    assertThat(allocated / methods).isLessThan(MAX_BYTES_PER_METHOD);
+  }
+
+  private static CompilationUnit parse() {
+    final ASTParser parser = ParserContext.get(JavaVersion.V1_16)
+        .getParser();
+    parser.setSource(getSourceCode().toCharArray());
+    return (CompilationUnit) parser.createAST(null);
+  }
+
+  private static int visit(final IVConfig config, final RevCommit commit,
+      final CompilationUnit ast) {
+    final JavaFileVisitor visitor = new JavaFileVisitor(config, null, commit, "C.java");
+    ast.accept(visitor);
+    return visitor.getJavaMethods()
+        .size();
+  }
+
+  private static String getSourceCode() {
+    final StringBuilder text = new StringBuilder();
+    text.append("import java.util.*;\n");
+    text.append("public class C {\n");
+    for (int index = 0; index < METHODS; index++) {
+      text.append("  public int method")
+          .append(index)
+          .append("(int a, List<String> b) {\n");
+      text.append("    int sum = 0;\n");
+      text.append("    for (int i = 0; i < a; i++) {\n");
+      text.append("      if (b.get(i).isEmpty()) {\n");
+      text.append("        sum += i * ")
+          .append(index)
+          .append(";\n");
+      text.append("      }\n");
+      text.append("    }\n");
+      text.append("    return sum + \"x\".length();\n");
+      text.append("  }\n");
+    }
+    text.append("}\n");
+    return text.toString();
+  }
+}
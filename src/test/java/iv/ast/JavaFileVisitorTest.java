@@ -96,6 +96,20 @@ public class JavaFileVisitorTest {
           "  }" + //
           "}";
 
+  // checking raw source slicing
+  private static final String methodCode_CheckingRawSource = //
+      "public class Class1 {\n" + //
+          "  @Override\n" + //
+          "  public String method1(@Nullable String a, @PathVariable(\"id\") long id) {\n" + //
+          "    return a + id;\n" + //
+          "  }\n" + //
+          "  /** doc */\n" + //
+          "  public static String method2(final String b) {\n" + //
+          "    // comment\n" + //
+          "    return b + 1;\n" + //
+          "  }\n" + //
+          "}";
+
   @Test
   public void test_checkingTypeParameterHandling() {
     final IVConfig config = Mockito.mock(IVConfig.class);
@@ -199,4 +213,28 @@ public class JavaFileVisitorTest {
         methodCode_CheckingHashCalculation5);
     assertThat(methods).hasSize(1);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void test_checkingRawSource() {
+    final IVConfig config = Mockito.mock(IVConfig.class);
+    when(config.getJavaVersion()).thenReturn(JavaVersion.V1_16);
+    when(config.isRawSource()).thenReturn(true);
+    final RevCommit commit = Mockito.mock(RevCommit.class);
+    when(commit.getName()).thenReturn("commit1");
+    final JavaMethodExtractor extractor = new JavaMethodExtractor(config, null, commit);
+    final List<JavaMethod> methods = extractor.getJavaMethods("", methodCode_CheckingRawSource);
+    assertThat(methods).hasSize(2);
+
+    // 仮引数にアノテーションがある場合は，それらを取り除いてASTから作る
+    final JavaMethod method1 = methods.get(0);
+    assertThat(method1.getRawText()).startsWith("String method1(String a,long id)")
+        .doesNotContain("@");
+    assertThat(method1.startLine).isEqualTo(2);
+
+    // それ以外の場合は，メソッドのJavadocと修飾子のみを除いてソースコードからそのまま切り出す
+    final JavaMethod method2 = methods.get(1);
+    assertThat(method2.getRawText()).isEqualTo(
+        "String method2(final String b) {\n    // comment\n    return b + 1;\n  }");
+    assertThat(method2.startLine).isEqualTo(7);
+  }
+}
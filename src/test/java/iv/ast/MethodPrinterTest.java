@@ -0,0 +1,243 @@
+package iv.ast;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CharacterLiteral;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Javadoc;
+import org.eclipse.jdt.core.dom.MarkerAnnotation;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.NormalAnnotation;
+import org.eclipse.jdt.core.dom.NumberLiteral;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.junit.Test;
+import iv.IVConfig;
+import iv.JavaVersion;
+import iv.data.JavaMethod;
+
+/**
+ * MethodPrinterの出力が，これまでのASTを書き換えてからtoStringする方法と一致することを確認する．
+ * 一致しないとデータベースに蓄積済みのハッシュ値と比較できなくなる．
+ */
+public class MethodPrinterTest {
+
+  private static final String SOURCE = "/golden/Syntax.java";
+
+  // ASTを書き換えていた実装で golden/Syntax.java から抽出した結果
+  private static final String EXPECTED = "/golden/Syntax.expected";
+
+  @Test
+  public void test_toString() throws Exception {
+    final CompilationUnit ast = parse(read(SOURCE));
+    final List<MethodDeclaration> methods = new ArrayList<>();
+    final List<ASTNode> nodes = new ArrayList<>();
+    ast.accept(new ASTVisitor(true) {
+
+      @Override
+      public void preVisit(final ASTNode node) {
+        nodes.add(node);
+        if (node instanceof MethodDeclaration) {
+          methods.add((MethodDeclaration) node);
+        }
+      }
+    });
+
+    // 書き換えがなければ，正規化したテキストも元のテキストもtoStringと一致する
+    final Map<ASTNode, String> replacements = new IdentityHashMap<>();
+    final Set<ASTNode> strippedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    final MethodPrinter printer = new MethodPrinter(replacements, strippedNodes);
+    for (final MethodDeclaration method : methods) {
+      printer.print(method, true);
+      assertThat(printer.getNormalizedText()).isEqualTo(method.toString());
+      assertThat(printer.getRawText()).isEqualTo(method.toString());
+    }
+
+    // 無作為に選んだノードを書き換えたものとして出力し，実際に書き換えたASTのtoStringと比べる
+    final Random random = new Random(0);
+    for (final ASTNode node : nodes) {
+      if (0 != random.nextInt(3)) {
+        continue;
+      }
+      if (node instanceof SimpleName) {
+        replacements.put(node, "$variable");
+      } else if (node instanceof CharacterLiteral) {
+        replacements.put(node, "'$'");
+      } else if (node instanceof NumberLiteral) {
+        replacements.put(node, "0");
+      } else if (node instanceof StringLiteral) {
+        replacements.put(node, "\"$string\"");
+      } else if (node instanceof MethodDeclaration
+          || node instanceof VariableDeclarationStatement) {
+        strippedNodes.add(node);
+      } else if (node instanceof ParameterizedType
+          && node.getLocationInParent() == ClassInstanceCreation.TYPE_PROPERTY) {
+        strippedNodes.add(node);
+      }
+    }
+    final List<String> normalizedTexts = new ArrayList<>();
+    final List<String> rawTexts = new ArrayList<>();
+    for (final MethodDeclaration method : methods) {
+      printer.print(method, true);
+      normalizedTexts.add(printer.getNormalizedText());
+      rawTexts.add(printer.getRawText());
+    }
+
+    // 元のテキストに反映されるのは，出力するメソッド自身の修飾子などの除去だけである
+    // 入れ子のメソッドの期待値を壊さないように，除去したものは比べた後で元に戻す
+    for (int index = 0; index < methods.size(); index++) {
+      final MethodDeclaration method = methods.get(index);
+      if (!strippedNodes.contains(method)) {
+        assertThat(rawTexts.get(index)).isEqualTo(method.toString());
+        continue;
+      }
+      final List<Object> modifiers = new ArrayList<>(method.modifiers());
+      final List<List<Object>> parameterModifiers = new ArrayList<>();
+      for (final Object parameter : method.parameters()) {
+        parameterModifiers.add(new ArrayList<>(((SingleVariableDeclaration) parameter).modifiers()));
+      }
+      final Javadoc javadoc = method.getJavadoc();
+      strip(method);
+      assertThat(rawTexts.get(index)).isEqualTo(method.toString());
+      method.modifiers()
+          .clear();
+      method.modifiers()
+          .addAll(modifiers);
+      for (int i = 0; i < parameterModifiers.size(); i++) {
+        ((SingleVariableDeclaration) method.parameters()
+            .get(i)).modifiers()
+                .addAll(parameterModifiers.get(i));
+      }
+      method.setJavadoc(javadoc);
+    }
+
+    for (final ASTNode node : nodes) {
+      if (replacements.containsKey(node)) {
+        if (node instanceof SimpleName) {
+          ((SimpleName) node).setIdentifier("$variable");
+        } else if (node instanceof CharacterLiteral) {
+          ((CharacterLiteral) node).setCharValue('$');
+        } else if (node instanceof NumberLiteral) {
+          ((NumberLiteral) node).setToken("0");
+        } else {
+          ((StringLiteral) node).setLiteralValue("$string");
+        }
+      }
+      if (strippedNodes.contains(node)) {
+        if (node instanceof MethodDeclaration) {
+          strip((MethodDeclaration) node);
+        } else if (node instanceof VariableDeclarationStatement) {
+          ((VariableDeclarationStatement) node).modifiers()
+              .removeIf(modifier -> modifier instanceof Modifier);
+        } else {
+          ((ParameterizedType) node).typeArguments()
+              .clear();
+        }
+      }
+    }
+    for (int index = 0; index < methods.size(); index++) {
+      assertThat(normalizedTexts.get(index)).isEqualTo(methods.get(index)
+          .toString());
+    }
+  }
+
+  @Test
+  public void test_golden() throws Exception {
+
+    // ハッシュ値は改行文字を除いて計算するので，改行文字が異なる環境では一致しない
+    assumeTrue("\n".equals(System.lineSeparator()));
+
+    final String text = read(SOURCE);
+    final IVConfig slicedConfig = new IVConfig();
+    slicedConfig.setJavaVersion("1.16");
+    slicedConfig.setRawSource(true);
+    final IVConfig printedConfig = new IVConfig();
+    printedConfig.setJavaVersion("1.16");
+    final List<JavaMethod> slicedMethods = new JavaMethodExtractor(slicedConfig, null, null)
+        .getJavaMethods(SOURCE, text);
+    final List<JavaMethod> printedMethods = new JavaMethodExtractor(printedConfig, null, null)
+        .getJavaMethods(SOURCE, text);
+    assertThat(format(slicedMethods, printedMethods)).isEqualTo(read(EXPECTED));
+  }
+
+  /**
+   * 抽出したメソッドごとに，戻り値の型，引数の型，元のテキスト（ソースから切り出したものとASTから出力したもの），
+   * 正規化したテキスト，MD5を並べる．
+   */
+  static String format(final List<JavaMethod> slicedMethods,
+      final List<JavaMethod> printedMethods) {
+    assertThat(printedMethods).hasSameSizeAs(slicedMethods);
+    final StringBuilder builder = new StringBuilder();
+    for (int index = 0; index < slicedMethods.size(); index++) {
+      final JavaMethod sliced = slicedMethods.get(index);
+      final JavaMethod printed = printedMethods.get(index);
+      assertThat(printed.getNormalizedText()).isEqualTo(sliced.getNormalizedText());
+      builder.append(sliced.name)
+          .append(' ')
+          .append(sliced.startLine)
+          .append('-')
+          .append(sliced.endLine)
+          .append(' ')
+          .append(sliced.returnType)
+          .append(' ')
+          .append(sliced.getParameters())
+          .append('\n')
+          .append(sliced.getRawText())
+          .append("\n--\n")
+          .append(printed.getRawText())
+          .append("\n--\n")
+          .append(sliced.getNormalizedText())
+          .append("\n--\n");
+      for (final byte b : sliced.getMD5()) {
+        builder.append(String.format("%02x", b));
+      }
+      builder.append("\n==\n");
+    }
+    return builder.toString();
+  }
+
+  private static void strip(final MethodDeclaration method) {
+    method.modifiers()
+        .removeIf(modifier -> modifier instanceof MarkerAnnotation
+            || modifier instanceof NormalAnnotation || modifier instanceof Modifier);
+    for (final Object parameter : method.parameters()) {
+      ((SingleVariableDeclaration) parameter).modifiers()
+          .clear();
+    }
+    if (null != method.getJavadoc()) {
+      method.getJavadoc()
+          .delete();
+    }
+  }
+
+  private static CompilationUnit parse(final String text) {
+    final ASTParser parser = ParserContext.get(JavaVersion.V1_16)
+        .getParser();
+    parser.setSource(text.toCharArray());
+    return (CompilationUnit) parser.createAST(null);
+  }
+
+  private static String read(final String resource) throws IOException {
+    try (final InputStream stream = MethodPrinterTest.class.getResourceAsStream(resource)) {
+      return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
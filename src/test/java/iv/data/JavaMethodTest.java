@@ -1,6 +1,8 @@
 package iv.data;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import org.junit.Test;
 
 public class JavaMethodTest {
@@ -25,4 +27,70 @@ public class JavaMethodTest {
         0, "aaa/bbb/C.java", 1, 10, "repository", null);
     assertThat(method.isTest()).isFalse();
   }
+
+  @Test
+  public void test_getMD5() throws Exception {
+    final String normalizedText = "int $method(int $variable) {" + System.lineSeparator()
+        + "  return $variable\t+ 0;" + System.lineSeparator() + "}" + System.lineSeparator();
+    final JavaMethod method = new JavaMethod("int", "name", "rawText", normalizedText, 1, 0,
+        "aaa/bbb/C.java", 1, 3, "repository", null);
+    final String textForHash = normalizedText.replace(" ", "")
+        .replace("\t", "")
+        .replace(System.lineSeparator(), "");
+    final byte[] expected = MessageDigest.getInstance("MD5")
+        .digest(textForHash.getBytes());
+    assertThat(method.getMD5()).isEqualTo(expected);
+  }
+
+  @Test
+  public void test_digestBytes() {
+
+    // バイト列から直接計算したMD5は，文字列から計算したものと改行の扱いも含めて一致する
+    final String[] texts = {"", "\r", "\n", "\r\n", "\r\r\n\n", "a \r \n b", "a\r\tb\n",
+        "{\r\n  return 0;\r\n}\r\n", "\r\r\r", "a\n\r\nb\r"};
+    for (final String text : texts) {
+      final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      for (final String lineSeparator : new String[] {"\n", "\r\n"}) {
+        assertThat(JavaMethod.digest(bytes, lineSeparator)).as("%s with %s", text, lineSeparator)
+            .isEqualTo(JavaMethod.digest(text, lineSeparator));
+      }
+    }
+  }
+
+  @Test
+  public void test_getRawText() {
+    final char[] source = "class C {\n  int m() {\n    return 1 + 1;\n  }\n}\n".toCharArray();
+    final JavaMethod method = new JavaMethod("int", "m", new SourceSlice(source, 12, 31),
+        "normalizedText", 1, 0, "aaa/bbb/C.java", 2, 4, "repository", null);
+    assertThat(method.getRawText()).isEqualTo("int m() {\n    return 1 + 1;\n  }");
+  }
+
+  @Test
+  public void test_getHash() {
+    final JavaMethod method1 = new JavaMethod("int", "name", "rawText",
+        "int $method() {\n  return 0;\n}", 1, 0, "aaa/bbb/C.java", 1, 3, "repository", null);
+    final JavaMethod method2 = new JavaMethod("int", "name", "rawText",
+        "int $method() {\r\n\treturn 0;\r\n}", 1, 0, "aaa/bbb/C.java", 1, 3, "repository", null);
+    final JavaMethod method3 = new JavaMethod("int", "name", "rawText",
+        "int $method() {\n  return 1;\n}", 1, 0, "aaa/bbb/C.java", 1, 3, "repository", null);
+    assertThat(method1.getHash(Fingerprint.MURMUR3_128)).hasSize(16)
+        .isEqualTo(method2.getHash(Fingerprint.MURMUR3_128))
+        .isNotEqualTo(method3.getHash(Fingerprint.MURMUR3_128));
+  }
+
+  @Test
+  public void test_relocate() {
+    final JavaMethod method = new JavaMethod("int", "name", "rawText", "normalizedText", 1, 0,
+        "aaa/bbb/C.java", 1, 3, "repository", null);
+    method.addParameter("String");
+    method.addParameter("int");
+    final JavaMethod relocated = method.relocate(new String("aaa/ccc/C.java"),
+        new String("repository"), "0123abcd");
+    assertThat(relocated.getParameters()).containsExactly("String", "int");
+    assertThat(relocated.getRawText()).isEqualTo("rawText");
+    assertThat(relocated.getNormalizedText()).isEqualTo("normalizedText");
+    assertThat(relocated.getNormalizedTextBytes()).isSameAs(method.getNormalizedTextBytes());
+    assertThat(relocated.repository).isSameAs(method.repository);
+    assertThat(relocated.path).isEqualTo("aaa/ccc/C.java");
+  }
 }
@@ -0,0 +1,44 @@
+package iv.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.Test;
+
+public class SourceScreenTest {
+
+  @Test
+  public void test_accept1() {
+    final SourceScreen screen = new SourceScreen();
+    assertThat(screen.accept("aaa/test/bbb/C.java")).isFalse();
+    assertThat(screen.accept("aaa/bbb/CTest.java")).isFalse();
+    assertThat(screen.getTests()).isEqualTo(2L);
+    assertThat(screen.getToys()).isEqualTo(0L);
+  }
+
+  @Test
+  public void test_accept2() {
+    final SourceScreen screen = new SourceScreen();
+    assertThat(screen.accept("aaa/examples/bbb/C.java")).isFalse();
+    assertThat(screen.getTests()).isEqualTo(0L);
+    assertThat(screen.getToys()).isEqualTo(1L);
+  }
+
+  @Test
+  public void test_accept3() {
+    final SourceScreen screen = new SourceScreen();
+    assertThat(screen.accept("aaa/bbb/C.java")).isTrue();
+    assertThat(screen.getTests()).isEqualTo(0L);
+    assertThat(screen.getToys()).isEqualTo(0L);
+  }
+
+  @Test
+  public void test_acceptDirectory1() {
+    final SourceScreen screen = new SourceScreen();
+    assertThat(screen.acceptDirectory("unitTests")).isFalse();
+    assertThat(screen.acceptDirectory("testdata")).isFalse();
+    assertThat(screen.acceptDirectory("Examples")).isFalse();
+    assertThat(screen.acceptDirectory("main")).isTrue();
+    assertThat(screen.getTestDirectories()).isEqualTo(2L);
+    assertThat(screen.getToyDirectories()).isEqualTo(1L);
+    assertThat(screen.getTests()).isEqualTo(0L);
+  }
+}
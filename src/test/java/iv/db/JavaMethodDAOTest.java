@@ -0,0 +1,99 @@
+package iv.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import iv.IVConfig;
+import iv.data.JavaMethod;
+
+public class JavaMethodDAOTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path database;
+
+  @Before
+  public void setUp() throws Exception {
+    database = folder.getRoot()
+        .toPath()
+        .resolve("iv.db");
+    final IVConfig config = new IVConfig();
+    config.setDesPath(database.toString());
+    config.setCommitGroup(1);
+    JavaMethodDAO.SINGLETON.initialize(config);
+  }
+
+  @After
+  public void tearDown() {
+    JavaMethodDAO.SINGLETON.close();
+  }
+
+  private Connection connect() throws Exception {
+    return DriverManager.getConnection("jdbc:sqlite:" + database.toAbsolutePath());
+  }
+
+  @Test
+  public void test_close() throws Exception {
+    try (final Connection connection = connect();
+        final Statement statement = connection.createStatement()) {
+      statement.executeUpdate("insert into methods(signature, name, path, start, end, repo, "
+          + "revision, compilable, tests, groupID) "
+          + "values ('int(int)', 'm', 'p', 1, 2, 'repository', 'revision', 0, 0, -1)");
+    }
+
+    // キューが一杯になっても結果は失われない
+    for (int tests = 1; tests <= 10; tests++) {
+      JavaMethodDAO.SINGLETON.setTests(1, tests, "", "");
+    }
+    JavaMethodDAO.SINGLETON.close();
+
+    try (final Connection connection = connect();
+        final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery("select tests from methods where id = 1")) {
+      assertThat(results.next()).isTrue();
+      assertThat(results.getInt(1)).isEqualTo(10);
+    }
+
+    // 閉じた後の読み出しと遅延書き込みは拒否される
+    assertThatThrownBy(() -> JavaMethodDAO.SINGLETON.isCompilable(1))
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> JavaMethodDAO.SINGLETON.setTests(1, 0, "", ""))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private static JavaMethod method(final String normalizedText, final int startLine) {
+    final JavaMethod method = new JavaMethod("int", "name", "rawText", normalizedText, 2, 1,
+        "aaa/bbb/C.java", startLine, startLine + 5, "repository", null);
+    method.addParameter("int");
+    return method;
+  }
+
+  @Test
+  public void test_addMethods() throws Exception {
+
+    // 同じハッシュ値のメソッドが一つのチャンクに含まれていても，異なるハッシュ値の数は正しく数える
+    JavaMethodDAO.SINGLETON.addMethods(List.of(method("a", 1), method("a", 11), method("b", 21)));
+    JavaMethodDAO.SINGLETON.addMethods(List.of(method("b", 31), method("c", 41), method("c", 51)));
+    JavaMethodDAO.SINGLETON.close();
+
+    try (final Connection connection = connect();
+        final Statement statement = connection.createStatement();
+        final ResultSet results = statement.executeQuery(
+            "select eligible, hashes from method_groups where signature = 'int(int)'")) {
+      assertThat(results.next()).isTrue();
+      assertThat(results.getInt(1)).isEqualTo(6);
+      assertThat(results.getInt(2)).isEqualTo(3);
+    }
+  }
+}
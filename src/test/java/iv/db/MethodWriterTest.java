@@ -0,0 +1,56 @@
+package iv.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import org.junit.Test;
+import org.mockito.Mockito;
+import iv.data.JavaMethod;
+
+public class MethodWriterTest {
+
+  private static JavaMethod method() {
+    return new JavaMethod("int", "name", "rawText", "normalizedText", 1, 0, "aaa/bbb/C.java", 1,
+        3, "repository", null);
+  }
+
+  @Test
+  public void test_interrupted() {
+    final JavaMethodDAO dao = Mockito.mock(JavaMethodDAO.class);
+    final MethodWriter writer = new MethodWriter(dao, 1);
+    writer.start();
+
+    // 割り込まれたメソッドは例外で知らされ，書き込まれたものとして数えない
+    Thread.currentThread()
+        .interrupt();
+    assertThatThrownBy(() -> writer.accept(method())).isInstanceOf(UncheckedIOException.class)
+        .hasCauseInstanceOf(InterruptedIOException.class);
+    assertThat(Thread.currentThread()
+        .isInterrupted()).isTrue();
+
+    // 割り込まれていても終端は書き込みスレッドに届き，closeは戻ってくる
+    writer.close();
+    assertThat(Thread.interrupted()).isTrue();
+    verify(dao, never()).addMethods(anyList());
+    assertThat(writer.getStatistics()).startsWith("written methods: 0 in 0 batches")
+        .contains("queue depth: max 0, average 0,");
+  }
+
+  @Test
+  public void test_close() {
+    final JavaMethodDAO dao = Mockito.mock(JavaMethodDAO.class);
+    final MethodWriter writer = new MethodWriter(dao, 2);
+    writer.start();
+    writer.accept(method());
+    writer.accept(method());
+    writer.accept(method());
+    writer.close();
+    verify(dao, times(2)).addMethods(anyList());
+    assertThat(writer.getStatistics()).startsWith("written methods: 3 in 2 batches");
+  }
+}
@@ -0,0 +1,109 @@
+package iv.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class TextCompressorTest {
+
+  private static final String SCAFFOLDING = "@EvoSuiteClassExclude" + System.lineSeparator()
+      + "public class Target_ESTest_scaffolding {" + System.lineSeparator()
+      + "  @org.junit.Rule" + System.lineSeparator()
+      + "  public org.evosuite.runtime.vnet.NonFunctionalRequirementRule nfr = "
+      + "new org.evosuite.runtime.vnet.NonFunctionalRequirementRule();" + System.lineSeparator()
+      + "  private static final java.util.Properties defaultProperties = "
+      + "(java.util.Properties) java.lang.System.getProperties().clone();" + System.lineSeparator();
+
+  @Test
+  public void test_compress() throws Exception {
+    final TextCompressor compressor = new TextCompressor(true);
+    final byte[] text = SCAFFOLDING.repeat(4)
+        .getBytes(StandardCharsets.UTF_8);
+    final byte[] compressed = compressor.compress("rtext", text);
+    assertThat(TextCompressor.isCompressed(compressed)).isTrue();
+    assertThat(compressed.length).isLessThan(text.length);
+    assertThat(compressor.decompress(compressed)).isEqualTo(text);
+  }
+
+  @Test
+  public void test_compressWithDictionary() throws Exception {
+    try (final Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        final Statement statement = connection.createStatement()) {
+      statement.executeUpdate(
+          "create table dictionaries (" + JavaMethodDAO.DICTIONARIES_SCHEMA + ")");
+      final TextCompressor compressor = new TextCompressor(true);
+      final byte[] first = (SCAFFOLDING + "  // 1" + System.lineSeparator()).getBytes(
+          StandardCharsets.UTF_8);
+      final byte[] second = (SCAFFOLDING + "  // 2" + System.lineSeparator()).getBytes(
+          StandardCharsets.UTF_8);
+      final byte[] withoutDictionary = compressor.compress("scaffolding", second);
+      compressor.train(connection, "scaffolding", Collections.singletonList(first));
+      compressor.commit();
+      final byte[] compressed = compressor.compress("scaffolding", second);
+      assertThat(compressed.length).isLessThan(withoutDictionary.length);
+
+      // 記録した辞書を読み込めば，別のインスタンスでも展開できる
+      final TextCompressor reader = new TextCompressor(false);
+      reader.load(connection);
+      assertThat(reader.decompress(compressed)).isEqualTo(second);
+    }
+  }
+
+  @Test
+  public void test_trainWithLargeID() throws Exception {
+    try (final Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        final Statement statement = connection.createStatement()) {
+      statement.executeUpdate(
+          "create table dictionaries (" + JavaMethodDAO.DICTIONARIES_SCHEMA + ")");
+      statement.executeUpdate(
+          "insert into dictionaries(name, content, id) values ('rtext', x'00', 300)");
+
+      // 辞書のIDが1バイトに収まらなくても，辞書を登録して圧縮と展開ができる
+      final TextCompressor compressor = new TextCompressor(true);
+      final byte[] text = SCAFFOLDING.getBytes(StandardCharsets.UTF_8);
+      compressor.train(connection, "scaffolding", Collections.singletonList(text));
+      compressor.commit();
+      assertThat(compressor.needsDictionary("scaffolding")).isFalse();
+      final byte[] compressed = compressor.compress("scaffolding", text);
+      assertThat(TextCompressor.isCompressed(compressed)).isTrue();
+      assertThat(compressed.length).isLessThan(text.length / 4);
+
+      final TextCompressor reader = new TextCompressor(false);
+      reader.load(connection);
+      assertThat(reader.decompress(compressed)).isEqualTo(text);
+    }
+  }
+
+  @Test
+  public void test_buildDictionary() {
+
+    // 複数の値に現れる行を，省けるバイト数が多い行ほど末尾に置き，その前を値の連結で埋める
+    final String common = "    return $variable;\n";
+    final String frequent = "  }\n";
+    final String first = "int $method() {\n    int unique1 = 1;\n" + common + frequent;
+    final String second = "int $method() {\n    int unique2 = 2;\n" + common + frequent;
+    final String third = "String $method() {\n" + frequent;
+    final byte[] dictionary = TextCompressor.buildDictionary(Arrays.asList(
+        first.getBytes(StandardCharsets.UTF_8), second.getBytes(StandardCharsets.UTF_8), null,
+        third.getBytes(StandardCharsets.UTF_8)));
+    assertThat(new String(dictionary, StandardCharsets.UTF_8)).isEqualTo(
+        first + second + third + frequent + "int $method() {\n" + common);
+
+    // 値が一つしかない場合は，その値の先頭を辞書にする
+    final byte[] text = SCAFFOLDING.getBytes(StandardCharsets.UTF_8);
+    assertThat(TextCompressor.buildDictionary(Collections.singletonList(text))).isEqualTo(text);
+  }
+
+  @Test
+  public void test_uncompressed() throws Exception {
+    final TextCompressor compressor = new TextCompressor(false);
+    final byte[] text = SCAFFOLDING.getBytes(StandardCharsets.UTF_8);
+    assertThat(compressor.compress("rtext", text)).isSameAs(text);
+    assertThat(compressor.decompress(text)).isSameAs(text);
+  }
+}
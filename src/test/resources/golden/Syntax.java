@@ -0,0 +1,265 @@
+package golden;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Methods that cover the syntax the method printer has to reproduce.
+ */
+public class Syntax {
+
+  private final Map<String, Integer> counts = new HashMap<>();
+
+  /**
+   * Javadoc, modifiers and final parameters are stripped.
+   *
+   * @param text {@code text} to count
+   * @return the count
+   */
+  @Deprecated
+  @SuppressWarnings(value = {"unused"})
+  public static final synchronized int literals(final String text, final char c) {
+    final long big = 0x7fffL + 1_000;
+    final double d = 1.5e3d;
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == c || text.charAt(i) == '\n' || text.charAt(i) == '\'') {
+        count += (int) (big % 3) + (int) d;
+      }
+    }
+    return count + "tab\t\"quoted\"".length();
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<String> singleMemberAnnotation(final List<String> values) {
+    final List<String> copy = new ArrayList<String>(values);
+    final Map<String, List<Integer>> map = new HashMap<String, List<Integer>>();
+    final List<String>[] arrays = new List[] {copy, new ArrayList<>()};
+    map.put("a", new ArrayList<>(Arrays.asList(1, 2, 3)));
+    return arrays[0];
+  }
+
+  public String annotatedParameters(@Deprecated final String a, @SuppressWarnings("x") int b) {
+    return a.substring(b) + a.length();
+  }
+
+  public int nested(final List<String> values) {
+    final Comparator<String> comparator = new Comparator<String>() {
+
+      /** Inner Javadoc. */
+      @Override
+      public int compare(final String left, final String right) {
+        final int byLength = Integer.compare(left.length(), right.length());
+        return byLength != 0 ? byLength : left.compareTo(right);
+      }
+
+      public String thrower(final String text) throws Exception {
+        final String trimmed = text.trim();
+        return trimmed;
+      }
+
+      @Deprecated
+      private int untouched(final int x) {
+        return x;
+      }
+    };
+    values.sort(comparator);
+    return values.size() * 2;
+  }
+
+  public String switches(final int kind, final String text) {
+    final String label = switch (kind) {
+      case 0, 1 -> "small";
+      case 2 -> {
+        final String s = text.trim();
+        yield s.toUpperCase();
+      }
+      default -> text.toLowerCase();
+    };
+    final int old;
+    switch (kind) {
+      case 0:
+        old = 1;
+        break;
+      case 1: {
+        old = 2;
+        break;
+      }
+      default:
+        old = 3;
+    }
+    final int colon = switch (kind) {
+      case 0:
+        yield 10;
+      default:
+        yield text.length();
+    };
+    return label + old + colon;
+  }
+
+  public String blocks(final String name) {
+    final String block = """
+        Hello,
+          \"%s\"
+        """;
+    return block.formatted(name).strip();
+  }
+
+  public int lambdas(final List<String> values) {
+    final Function<String, Integer> length = String::length;
+    final Function<Integer, int[]> maker = int[]::new;
+    final Supplier<List<String>> supplier = ArrayList<String>::new;
+    final Comparator<String> comparator = (a, b) -> a.length() - b.length();
+    final Comparator<String> typed = (final String a, final String b) -> {
+      return a.compareTo(b);
+    };
+    values.removeIf(v -> v.isEmpty());
+    return length.apply(values.get(0)) + maker.apply(3).length + supplier.get().size()
+        + comparator.compare("a", "bb") + typed.compare("a", "b");
+  }
+
+  public int statements(final int[][] matrix, final Object object) {
+    int sum = 0, product = 1;
+    outer: for (final int[] row : matrix) {
+      int index = 0;
+      do {
+        if (row[index] < 0) {
+          continue outer;
+        } else if (row[index] == 0) {
+          break outer;
+        } else {
+          sum += row[index]++;
+        }
+        ;
+      } while (++index < row.length);
+    }
+    while (sum > 100) {
+      sum >>= 1;
+    }
+    synchronized (this.counts) {
+      product = -sum * ~product;
+    }
+    assert sum >= 0 : "negative";
+    if (object instanceof String text && !text.isEmpty()) {
+      sum += text.length();
+    }
+    final boolean flag = object instanceof Integer;
+    return flag ? sum : product;
+  }
+
+  public String resources(final String text) {
+    try (final StringReader reader = new StringReader(text); final StringReader other =
+        new StringReader(text)) {
+      return String.valueOf((char) reader.read()) + other.read();
+    } catch (final java.io.IOException | RuntimeException e) {
+      return e.getMessage();
+    } finally {
+      this.counts.clear();
+    }
+  }
+
+  public int localTypes(final int value) {
+    record Point(int x, int y) {
+
+      Point {
+        java.util.Objects.checkIndex(x, 10);
+      }
+
+      int sum() {
+        return this.x + this.y;
+      }
+    }
+    class Local {
+
+      private final int[] values[] = {{1}, {2, 3}};
+
+      int first() {
+        return this.values[0][0];
+      }
+    }
+    enum Color {
+      RED, GREEN("g") {
+        @Override
+        public String toString() {
+          return "green";
+        }
+      };
+
+      private final String code;
+
+      Color() {
+        this("r");
+      }
+
+      Color(final String code) {
+        this.code = code;
+      }
+    }
+    return new Point(value, value).sum() + new Local().first() + Color.RED.ordinal();
+  }
+
+  public java.lang.String qualifiedTypes(final String text) {
+    return text.trim();
+  }
+
+  public String arrays(final String[] values, final int... numbers) {
+    final int[][] grid = new int[values.length][];
+    final String[] copy = new String[] {"a", "b"};
+    final int total[] = {numbers.length};
+    return copy[0] + grid.length + total[0] + values[numbers[0]];
+  }
+
+  public <T extends Comparable<T>> T generic(final List<T> values) {
+    return values.get(0);
+  }
+
+  public List<? extends Number> wildcard(final List<Integer> values) {
+    return values;
+  }
+
+  public Object anonymousInMethod(final String text) {
+    final Object object = new Object() {
+
+      private final List<String> items = new ArrayList<String>();
+
+      {
+        this.items.add(text);
+      }
+
+      @Override
+      public String toString() {
+        final String prefix = "[";
+        return prefix + this.items + ']';
+      }
+    };
+    return object.hashCode() + text.length();
+  }
+
+  public String superAndThis(final String text) {
+    final Map<String, String> map = new HashMap<>();
+    map.put(text, text.concat(super.toString()));
+    return Syntax.this.counts.toString() + map.<String>getOrDefault(text, "none");
+  }
+
+  public int singleReturn(final int value) {
+    return value;
+  }
+
+  public String unqualified(final String text) {
+    return blocks(text);
+  }
+
+  public int throwing(final int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException();
+    }
+    return value + 1;
+  }
+}